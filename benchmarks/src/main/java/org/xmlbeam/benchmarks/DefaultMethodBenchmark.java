@@ -0,0 +1,131 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.util.intern.ReflectionHelper;
+import org.xmlbeam.util.intern.ReflectionHelper.MethodInvoker;
+
+/**
+ * Invocation of default methods on projections compared to plain projection methods.
+ *
+ * @author sven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultMethodBenchmark {
+
+    public interface Person {
+        @XBRead("/person/@first")
+        String getFirstName();
+
+        @XBRead("/person/@last")
+        String getLastName();
+
+        default String getGreeting() {
+            return "Hello";
+        }
+
+        default String getFullName() {
+            return getFirstName() + " " + getLastName();
+        }
+    }
+
+    private static final String XML = "<person first=\"Ada\" last=\"Lovelace\"/>";
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private Person person;
+    private Object greetingHandle;
+    private Method invokeWithArguments;
+    private MethodInvoker greetingInvoker;
+    private MethodHandle greetingSpreader;
+
+    @Setup
+    public void setup() throws Exception {
+        person = new XBProjector().projectXMLString(XML, Person.class);
+        final Method greeting = Person.class.getMethod("getGreeting");
+        greetingHandle = ReflectionHelper.resolveDefaultMethodHandle(greeting);
+        invokeWithArguments = MethodHandle.class.getMethod("invokeWithArguments", Object[].class);
+        greetingInvoker = ReflectionHelper.resolveDefaultMethodInvoker(greeting);
+        greetingSpreader = ((MethodHandle) greetingHandle).asSpreader(Object[].class, 0).asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+    }
+
+    @Benchmark
+    public String readScalar() {
+        return person.getFirstName();
+    }
+
+    @Benchmark
+    public String defaultMethod() {
+        return person.getGreeting();
+    }
+
+    @Benchmark
+    public String defaultMethodCallingProjection() {
+        return person.getFullName();
+    }
+
+    /**
+     * Default method call as done before, calling invokeWithArguments() through reflection to
+     * stay compatible with Java 6.
+     */
+    @Benchmark
+    public Object defaultMethodHandleReflective() throws Exception {
+        return invokeWithArguments.invoke(greetingHandle, new Object[] { new Object[] { person } });
+    }
+
+    /**
+     * The method handle wrapped by the invoker, called directly. This is the lower bound for
+     * {@link #defaultMethodInvoker()}.
+     */
+    @Benchmark
+    public Object defaultMethodHandleExact() throws Throwable {
+        return greetingSpreader.invokeExact((Object) person, NO_ARGS);
+    }
+
+    /**
+     * Default method call through the invoker used by projections. Compare with
+     * {@link #defaultMethodHandleReflective()} and {@link #defaultMethodHandleExact()}. Up to Java
+     * 20 MethodHandleProxies implements the invoker with a JDK Proxy, so the difference to
+     * {@link #defaultMethodHandleExact()} is the cost of that proxy on each call.
+     */
+    @Benchmark
+    public Object defaultMethodInvoker() throws Throwable {
+        return greetingInvoker.invoke(person, NO_ARGS);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.types.XBAutoMap;
+
+/**
+ * XPath evaluation API and auto maps.
+ *
+ * @author sven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    private static final String XML = "<root><value>4711</value><list><entry>1</entry><entry>2</entry><entry>3</entry></list></root>";
+
+    private XBProjector projector;
+    private XBAutoMap<String> map;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        projector = new XBProjector();
+        map = projector.autoMapEmptyDocument(String.class);
+        map.put("/root/value", "4711");
+        map.put("/root/other/value", "0815");
+    }
+
+    @Benchmark
+    public int evalXPathAsInt() {
+        return projector.onXMLString(XML).evalXPath("/root/value").asInt();
+    }
+
+    @Benchmark
+    public String autoMapGet() {
+        return map.get("/root/value");
+    }
+
+    @Benchmark
+    public String autoMapPut() {
+        return map.put("/root/other/value", Integer.toString(++counter & 0xff));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+
+/**
+ * Reading 100k element node sets as list and array.
+ *
+ * @author sven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LargeListBenchmark {
+
+    private static final int SIZE = 100000;
+
+    public interface Entry {
+        @XBRead(".")
+        String getValue();
+    }
+
+    public interface Root {
+        @XBRead("/root/entry")
+        List<String> getValues();
+
+        @XBRead("/root/entry")
+        String[] getValuesAsArray();
+
+        @XBRead("/root/entry")
+        List<Entry> getEntries();
+    }
+
+    private Root root;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < SIZE; ++i) {
+            builder.append("<entry>").append(i).append("</entry>");
+        }
+        root = new XBProjector().projectXMLString(builder.append("</root>").toString(), Root.class);
+    }
+
+    @Benchmark
+    public String readList() {
+        return root.getValues().get(SIZE / 2);
+    }
+
+    @Benchmark
+    public String readArray() {
+        return root.getValuesAsArray()[SIZE / 2];
+    }
+
+    @Benchmark
+    public String readSubProjectionList() {
+        return root.getEntries().get(SIZE / 2).getValue();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xmlbeam.dom.DOMAccess;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.XBProjector.Flags;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.annotation.XBWrite;
+
+/**
+ * Projection creation, reading and writing through projection methods.
+ *
+ * @author sven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    public interface Item {
+        @XBRead("@id")
+        String getID();
+    }
+
+    public interface Catalog {
+        @XBRead("/catalog/@name")
+        String getName();
+
+        @XBRead("/catalog/item/@id")
+        List<String> getIDs();
+
+        @XBRead("/catalog/item")
+        List<Item> getItems();
+
+        @XBWrite("/catalog/section[@name='{0}']/entry/@value")
+        Catalog setEntry(String section, String value);
+    }
+
+    private static final String XML;
+    static {
+        final StringBuilder builder = new StringBuilder("<catalog name=\"benchmark\">");
+        for (int i = 0; i < 20; ++i) {
+            builder.append("<item id=\"").append(i).append("\"/>");
+        }
+        XML = builder.append("</catalog>").toString();
+    }
+
+    private XBProjector projector;
+    private Catalog catalog;
+    private Catalog synchronizedCatalog;
+    private Document document;
+    private InvocationHandler handler;
+    private Constructor<?> proxyConstructor;
+
+    @Setup
+    public void setup() {
+        projector = new XBProjector();
+        catalog = projector.projectXMLString(XML, Catalog.class);
+        synchronizedCatalog = new XBProjector(Flags.SYNCHRONIZE_ON_DOCUMENTS).projectXMLString(XML, Catalog.class);
+        document = ((DOMAccess) catalog).getDOMOwnerDocument();
+        handler = Proxy.getInvocationHandler(catalog);
+        try {
+            proxyConstructor = catalog.getClass().getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Proxy creation through a constructor cached per projection interface, as done by the
+     * projector. Compare with {@link #newProxyInstance()}.
+     */
+    @Benchmark
+    public Object cachedProxyConstructor() throws Exception {
+        return proxyConstructor.newInstance(handler);
+    }
+
+    /**
+     * Proxy creation with a proxy class lookup for each instance.
+     */
+    @Benchmark
+    public Object newProxyInstance() {
+        return Proxy.newProxyInstance(Catalog.class.getClassLoader(), new Class<?>[] { Catalog.class, DOMAccess.class, Serializable.class }, handler);
+    }
+
+    @Benchmark
+    public Catalog projectDOMNode() {
+        return projector.projectDOMNode(document, Catalog.class);
+    }
+
+    /**
+     * First projection of a projector, including validation of the interface and creation of its
+     * model. The difference to {@link #projectDOMNode()} is the startup cost per projection
+     * interface, which the compile time checker does not remove.
+     */
+    @Benchmark
+    public Catalog projectDOMNodeWithNewProjector() {
+        return new XBProjector().projectDOMNode(document, Catalog.class);
+    }
+
+    @Benchmark
+    public Catalog projectXMLString() {
+        return projector.projectXMLString(XML, Catalog.class);
+    }
+
+    @Benchmark
+    public String readScalar() {
+        return catalog.getName();
+    }
+
+    @Benchmark
+    public String readScalarSynchronized() {
+        return synchronizedCatalog.getName();
+    }
+
+    @Benchmark
+    public List<String> readStringList() {
+        return catalog.getIDs();
+    }
+
+    @Benchmark
+    public int readSubProjectionList() {
+        int length = 0;
+        for (Item item : catalog.getItems()) {
+            length += item.getID().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public Catalog writeWithPathCreation() {
+        return projector.projectEmptyDocument(Catalog.class).setEntry("benchmark", "value");
+    }
+
+    @Benchmark
+    public String asString() {
+        return projector.asString(catalog);
+    }
+}
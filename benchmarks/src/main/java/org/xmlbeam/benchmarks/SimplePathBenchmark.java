@@ -0,0 +1,93 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xmlbeam.util.intern.SimplePathExpression;
+
+/**
+ * Direct DOM evaluation of simple location paths compared to the JAXP XPath engine.
+ *
+ * @author sven
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimplePathBenchmark {
+
+    private static final String XML = "<root><config><name>xmlbeam</name></config><items><item id=\"1\">one</item><item id=\"2\">two</item><item id=\"3\">three</item></items></root>";
+
+    @Param({ "/root/config/name", "/root/items/item[@id='3']", "/root/items/item[2]/@id" })
+    public String path;
+
+    private Document document;
+    private XPathExpression jaxpExpression;
+    private XPathExpression simpleExpression;
+
+    @Setup
+    public void setup() throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(XML.getBytes("UTF-8")));
+        final XPath xPath = XPathFactory.newInstance().newXPath();
+        jaxpExpression = xPath.compile(path);
+        simpleExpression = SimplePathExpression.compile(xPath, path);
+    }
+
+    @Benchmark
+    public Node jaxpNode() throws Exception {
+        return (Node) jaxpExpression.evaluate(document, XPathConstants.NODE);
+    }
+
+    @Benchmark
+    public Node simpleNode() throws Exception {
+        return (Node) simpleExpression.evaluate(document, XPathConstants.NODE);
+    }
+
+    @Benchmark
+    public String jaxpString() throws Exception {
+        return (String) jaxpExpression.evaluate(document, XPathConstants.STRING);
+    }
+
+    @Benchmark
+    public String simpleString() throws Exception {
+        return (String) simpleExpression.evaluate(document, XPathConstants.STRING);
+    }
+}
@@ -81,7 +81,7 @@ class AutoList<E> extends AbstractList<E> implements XBAutoList<E>, DOMChangeLis
     public AutoList(final Node baseNode, final InvocationContext invocationContext) {
         this.invocationContext = invocationContext;
         this.baseNode = baseNode;
-        this.invocationContext.getProjector().addDOMChangeListener(this);
+        this.invocationContext.getProjector().addDOMChangeListener(baseNode, this);
     }
 
     @Override
@@ -107,6 +107,7 @@ class AutoList<E> extends AbstractList<E> implements XBAutoList<E>, DOMChangeLis
         if (index < 0) {
             throw new IndexOutOfBoundsException();
         }
+        DOMHelper.markModified(baseNode);
         domChangeTracker.refreshForReadIfNeeded();
         if (index >= content.size()) {
             throw new IndexOutOfBoundsException();
@@ -136,6 +137,7 @@ class AutoList<E> extends AbstractList<E> implements XBAutoList<E>, DOMChangeLis
         if (e == null) {
             return false;
         }
+        DOMHelper.markModified(baseNode);
         if (parent == null) {
             domChangeTracker.domChanged();
         }
@@ -163,6 +165,7 @@ class AutoList<E> extends AbstractList<E> implements XBAutoList<E>, DOMChangeLis
         if (o == null) {
             throw new IllegalArgumentException("Can not add null to a ProjectedList. I don't know how to render that.");
         }
+        DOMHelper.markModified(baseNode);
 
         domChangeTracker.refreshForWriteIfNeeded();
 
@@ -200,6 +203,7 @@ class AutoList<E> extends AbstractList<E> implements XBAutoList<E>, DOMChangeLis
     @Override
     public E remove(final int index) {
         E result = get(index);
+        DOMHelper.markModified(baseNode);
         Node remove = content.remove(index);
         Node p = remove.getParentNode();
         if (p != null) {
@@ -215,6 +219,7 @@ class AutoList<E> extends AbstractList<E> implements XBAutoList<E>, DOMChangeLis
         if (o == null) {
             return false;
         }
+        DOMHelper.markModified(baseNode);
 
         domChangeTracker.refreshForReadIfNeeded(); // No creation of parent wanted
 
@@ -16,11 +16,15 @@
 package org.xmlbeam;
 
 import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -39,6 +43,8 @@ import org.xmlbeam.types.TypeConverter;
 import org.xmlbeam.types.XBAutoList;
 import org.xmlbeam.types.XBAutoMap;
 import org.xmlbeam.util.intern.DOMHelper;
+import org.xmlbeam.util.intern.LRUCache;
+import org.xmlbeam.util.intern.PerThreadXPathExpression;
 import org.xmlbeam.util.intern.duplex.DuplexExpression;
 import org.xmlbeam.util.intern.duplex.DuplexXPathParser;
 import org.xmlbeam.util.intern.duplex.ExpressionType;
@@ -55,6 +61,46 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
         }
     };
 
+    /**
+     * Compiled form of a path, with evaluation contexts for each requested value type.
+     */
+    private static final class CompiledPath {
+        final DuplexExpression duplexExpression;
+        final XPathExpression expression;
+        final ConcurrentMap<Class<?>, InvocationContext> contexts = new ConcurrentHashMap<Class<?>, InvocationContext>(4);
+
+        CompiledPath(final DuplexExpression duplexExpression, final XPathExpression expression) {
+            this.duplexExpression = duplexExpression;
+            this.expression = expression;
+        }
+    }
+
+    private static final int COMPILED_PATH_CACHE_SIZE = 256;
+
+    /**
+     * Parsed expressions are shared, so they identify a path together with the namespace mapping.
+     * Compiled expressions depend on the namespace context of the document and are dropped when
+     * the DOM changes.
+     */
+    private final LRUCache<DuplexExpression, CompiledPath> compiledPaths = new LRUCache<DuplexExpression, CompiledPath>(COMPILED_PATH_CACHE_SIZE);
+
+    /**
+     * Entries of the bound subtree, valid as long as the document has not been modified.
+     */
+    private static final class EntryIndex<T> {
+        final Node node;
+        final long modificationCount;
+        final Set<Map.Entry<String, T>> entries;
+
+        EntryIndex(final Node node, final long modificationCount, final Set<Map.Entry<String, T>> entries) {
+            this.node = node;
+            this.modificationCount = modificationCount;
+            this.entries = entries;
+        }
+    }
+
+    private EntryIndex<T> entryIndex;
+
     private final InvocationContext invocationContext;
     private final Node baseNode;
     private Node boundNode;
@@ -62,6 +108,7 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
     private final DomChangeTracker domChangeTracker = new DomChangeTracker() {
         @Override
         void refresh(final boolean forWrite) throws XPathExpressionException {
+            compiledPaths.clear();
             if (invocationContext.getxPathExpression() == null) {
                 boundNode = baseNode;
                 return;//xPath expression is optional for maps
@@ -86,7 +133,7 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
     public AutoMap(final Node baseNode, final InvocationContext invocationContext, final Class<?> valueType) {
         this.invocationContext = invocationContext;
         this.baseNode = baseNode;
-        this.invocationContext.getProjector().addDOMChangeListener(domChangeTracker);
+        this.invocationContext.getProjector().addDOMChangeListener(baseNode, domChangeTracker);
         this.typeConverter = invocationContext.getProjector().config().getTypeConverter();
         this.valueType = valueType;
     }
@@ -98,6 +145,7 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
     public void clear() {
         domChangeTracker.refreshForReadIfNeeded();
         if (boundNode != null) {
+            DOMHelper.markModified(boundNode);
             DOMHelper.removeAllChildren(boundNode);
         }
     }
@@ -142,13 +190,10 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
             return null;
         }
 
-        final Document document = DOMHelper.getOwnerDocumentFor(baseNode);
-        final DuplexExpression duplexExpression = new DuplexXPathParser(invocationContext.getProjector().config().getUserDefinedNamespaceMapping()).compile(path);
         try {
-            final XPathExpression expression = invocationContext.getProjector().config().createXPath(document).compile(duplexExpression.getExpressionAsStringWithoutFormatPatterns());
-            Node prevNode = (Node) expression.evaluate(boundNode, XPathConstants.NODE);
-            InvocationContext tempContext = new InvocationContext(invocationContext.getResolvedXPath(), invocationContext.getxPath(), expression, duplexExpression, null, asType, invocationContext.getProjector());
-            final E value = DefaultXPathEvaluator.convertToComponentType(tempContext, prevNode, asType);
+            final CompiledPath compiledPath = compile(path);
+            Node prevNode = (Node) compiledPath.expression.evaluate(boundNode, XPathConstants.NODE);
+            final E value = DefaultXPathEvaluator.convertToComponentType(getContext(compiledPath, asType), prevNode, asType);
             return value;
         } catch (XPathExpressionException e) {
             throw new XBPathException(e, path);
@@ -180,12 +225,8 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
             // We can not even return a writeable instance.
             return AutoList.emptyList();
         }
-        final Document document = DOMHelper.getOwnerDocumentFor(baseNode);
-        final DuplexExpression duplexExpression = new DuplexXPathParser(invocationContext.getProjector().config().getUserDefinedNamespaceMapping()).compile(path);
         try {
-            final XPathExpression expression = invocationContext.getProjector().config().createXPath(document).compile(duplexExpression.getExpressionAsStringWithoutFormatPatterns());
-            final InvocationContext tempContext = new InvocationContext(invocationContext.getResolvedXPath(), invocationContext.getxPath(), expression, duplexExpression, null, oType, invocationContext.getProjector());
-            return new AutoList<E>(boundNode, tempContext);
+            return new AutoList<E>(boundNode, getContext(compile(path), oType));
         } catch (XPathExpressionException e) {
             throw new XBPathException(e, path);
         }
@@ -248,14 +289,13 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
         }
         domChangeTracker.refreshForWriteIfNeeded();
         assert boundNode != null : "Bound node does not exist. No evaluation possible";
-        final Document document = DOMHelper.getOwnerDocumentFor(baseNode);
-        final DuplexExpression duplexExpression = new DuplexXPathParser(invocationContext.getProjector().config().getUserDefinedNamespaceMapping()).compile(path);
-        if ((ExpressionType.ATTRIBUTE == duplexExpression.getExpressionType()) && ProjectionInvocationHandler.isStructureChangingType(valueType)) {
-            throw new IllegalArgumentException("Value of type " + valueType + "can not be written to XML attributes. Choose a different xpath expression or use a different map component type");
-        }
         try {
-            final XPathExpression expression = invocationContext.getProjector().config().createXPath(document).compile(duplexExpression.getExpressionAsStringWithoutFormatPatterns());
-            Node prevNode = (Node) expression.evaluate(boundNode, XPathConstants.NODE);
+            final CompiledPath compiledPath = compile(path);
+            final DuplexExpression duplexExpression = compiledPath.duplexExpression;
+            if ((ExpressionType.ATTRIBUTE == duplexExpression.getExpressionType()) && ProjectionInvocationHandler.isStructureChangingType(valueType)) {
+                throw new IllegalArgumentException("Value of type " + valueType + "can not be written to XML attributes. Choose a different xpath expression or use a different map component type");
+            }
+            Node prevNode = (Node) compiledPath.expression.evaluate(boundNode, XPathConstants.NODE);
             final T previousValue = DefaultXPathEvaluator.convertToComponentType(invocationContext, prevNode, invocationContext.getTargetComponentType());
             if (ProjectionInvocationHandler.isStructureChangingValue(value)) {
                 final Element parent = duplexExpression.ensureParentExistence(boundNode);
@@ -283,6 +323,10 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
             return previousValue;
         } catch (XPathExpressionException e) {
             throw new XBPathException(e, path);
+        } finally {
+            // Counted after the change, so a namespace mapping scanned while compiling the path
+            // is not taken as current.
+            DOMHelper.markModified(baseNode);
         }
     }
 
@@ -313,24 +357,57 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
         }
         domChangeTracker.refreshForReadIfNeeded();
 
-        final Document document = DOMHelper.getOwnerDocumentFor(baseNode);
-        final DuplexExpression duplexExpression = new DuplexXPathParser(invocationContext.getProjector().config().getUserDefinedNamespaceMapping()).compile(xpath);
         try {
-            final XPathExpression expression = invocationContext.getProjector().config().createXPath(document).compile(duplexExpression.getExpressionAsStringWithoutFormatPatterns());
-            Node prevNode = (Node) expression.evaluate(boundNode, XPathConstants.NODE);
+            final CompiledPath compiledPath = compile(xpath);
+            Node prevNode = (Node) compiledPath.expression.evaluate(boundNode, XPathConstants.NODE);
             if (prevNode == null) {
                 return null;
             }
+            DOMHelper.markModified(prevNode);
             final T value = DefaultXPathEvaluator.convertToComponentType(invocationContext, prevNode, invocationContext.getTargetComponentType());
-            duplexExpression.deleteAllMatchingChildren(prevNode.getParentNode());
+            compiledPath.duplexExpression.deleteAllMatchingChildren(prevNode.getParentNode());
             return value;
         } catch (XPathExpressionException e) {
             throw new XBPathException(e, xpath);
         }
     }
 
+    private CompiledPath compile(final CharSequence path) throws XPathExpressionException {
+        final DuplexExpression duplexExpression = new DuplexXPathParser(invocationContext.getProjector().config().getUserDefinedNamespaceMapping()).compile(path);
+        CompiledPath compiledPath = compiledPaths.get(duplexExpression);
+        if (compiledPath != null) {
+            return compiledPath;
+        }
+        final Document document = DOMHelper.getOwnerDocumentFor(baseNode);
+        final XPathExpression expression = PerThreadXPathExpression.compile(invocationContext.getProjector().config(), invocationContext.getProjector().config().createXPath(document), duplexExpression.getExpressionAsStringWithoutFormatPatterns());
+        compiledPath = new CompiledPath(duplexExpression, expression);
+        if (duplexExpression.isUsingVariables()) {
+            // Such expressions are parsed again for every call and would never be found.
+            return compiledPath;
+        }
+        return compiledPaths.put(duplexExpression, compiledPath);
+    }
+
+    private InvocationContext getContext(final CompiledPath compiledPath, final Class<?> type) {
+        InvocationContext context = compiledPath.contexts.get(type);
+        if (context == null) {
+            context = new InvocationContext(invocationContext.getResolvedXPath(), invocationContext.getxPath(), compiledPath.expression, compiledPath.duplexExpression, null, type, invocationContext.getProjector());
+            compiledPath.contexts.put(type, context);
+        }
+        return context;
+    }
+
     /**
-     * {@inheritDoc}
+     * The entries are collected once and reused until the document is modified by a projection,
+     * an auto map, an auto list or an auto value. Thus size(), keySet() and iterations do not walk
+     * the DOM again. Direct changes of the DOM are not detected, call
+     * {@link XBProjector#notifyDOMChanged(Node)} after such changes.
+     * <p>
+     * The returned set is a snapshot. Removing entries through it, its iterator, keySet() or
+     * values() removes the elements or attributes by {@link #remove(CharSequence)}. Entries are
+     * read only, use {@link #put(String, Object)} to change values.
+     *
+     * @return set of entries
      */
     @Override
     public Set<Map.Entry<String, T>> entrySet() {
@@ -338,15 +415,63 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
         if (boundNode == null) {
             return Collections.emptySet();
         }
-        final Set<Map.Entry<String, T>> set = new TreeSet<Map.Entry<String, T>>(ENTRY_COMPARATOR) {
+        final long modificationCount = DOMHelper.getModificationCount(boundNode);
+        EntryIndex<T> index = entryIndex;
+        if ((index == null) || (index.node != boundNode) || (index.modificationCount != modificationCount)) {
+            final Set<Map.Entry<String, T>> set = new TreeSet<Map.Entry<String, T>>(ENTRY_COMPARATOR);
+            if ((invocationContext.getTargetComponentType().isInterface()) || (Node.class.isAssignableFrom(invocationContext.getTargetComponentType()))) {
+                collectChildren(set, boundNode, ".");
+            } else {
+                collectChildrenValues(set, boundNode, ".");
+            }
+            index = new EntryIndex<T>(boundNode, modificationCount, new EntrySet(set));
+            entryIndex = index;
+        }
+        return index.entries;
+    }
 
-        };
-        if ((invocationContext.getTargetComponentType().isInterface()) || (Node.class.isAssignableFrom(invocationContext.getTargetComponentType()))) {
-            collectChildren(set, boundNode, ".");
-        } else {
-            collectChildrenValues(set, boundNode, ".");
+    /**
+     * Read only view on an entry snapshot, except for removals which go to the DOM.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, T>> {
+        private final Set<Map.Entry<String, T>> entries;
+
+        EntrySet(final Set<Map.Entry<String, T>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, T>> iterator() {
+            final Iterator<Map.Entry<String, T>> iterator = entries.iterator();
+            return new Iterator<Map.Entry<String, T>>() {
+                private Map.Entry<String, T> current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, T> next() {
+                    current = iterator.next();
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    if (current == null) {
+                        throw new IllegalStateException();
+                    }
+                    AutoMap.this.remove(current.getKey());
+                    current = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
         }
-        return set;
     }
 
     private <E> void collectChildren(final Set<Entry<String, E>> set, final Node n, final String path) {
@@ -367,7 +492,7 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
             String childPath = path + "/" + child.getNodeName();
             E value = DefaultXPathEvaluator.convertToComponentType(invocationContext, child, invocationContext.getTargetComponentType());
             if (value != null) {
-                set.add(new SimpleEntry<String, E>(childPath, value));
+                set.add(new SimpleImmutableEntry<String, E>(childPath, value));
             }
             collectChildren(set, child, childPath);
         }
@@ -383,7 +508,7 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
             if (attributes != null) {
                 for (int i = 0; i < attributes.getLength(); ++i) {
                     // map.put(path + "/@" + attributes.item(i).getNodeName(), attributes.item(i));
-                    set.add(new SimpleEntry<String, E>(path + "/@" + attributes.item(i).getNodeName(), (E) (attributes.item(i).getNodeValue())));
+                    set.add(new SimpleImmutableEntry<String, E>(path + "/@" + attributes.item(i).getNodeName(), (E) (attributes.item(i).getNodeValue())));
                 }
             }
         }
@@ -398,12 +523,12 @@ public class AutoMap<T> extends AbstractMap<String, T> implements XBAutoMap<T>,
             }
             final String childPath = path + "/" + child.getNodeName();
             if (typeConverter.isConvertable(invocationContext.getTargetComponentType())) {
-                final String stringContent = DOMHelper.directTextContent(child);
-                if ((stringContent != null) && (!stringContent.isEmpty())) {
-                    final E value = (E) typeConverter.convertTo(invocationContext.getTargetComponentType(), stringContent, invocationContext.getExpressionFormatPattern());
+                final CharSequence textContent = DOMHelper.directText(child);
+                if ((textContent != null) && (textContent.length() > 0)) {
+                    final E value = DefaultXPathEvaluator.<E> convertText(invocationContext, invocationContext.getTargetComponentType(), textContent);
                     //T value = DefaultXPathEvaluator.convertToComponentType(invocationContext, child, invocationContext.getTargetComponentType());
                     if (value != null) {
-                        set.add(new SimpleEntry<String, E>(childPath, value));
+                        set.add(new SimpleImmutableEntry<String, E>(childPath, value));
                     }
                 }
             }
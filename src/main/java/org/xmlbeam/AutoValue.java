@@ -61,7 +61,7 @@ class AutoValue<E> implements XBAutoValue<E> {
     public AutoValue(final Node baseNode, final InvocationContext invocationContext) {
         this.baseNode = baseNode;
         this.invocationContext = invocationContext;
-        invocationContext.getProjector().addDOMChangeListener(domChangeTracker);
+        invocationContext.getProjector().addDOMChangeListener(baseNode, domChangeTracker);
 
     }
 
@@ -76,6 +76,7 @@ class AutoValue<E> implements XBAutoValue<E> {
 
     @Override
     public E set(final E element) {
+        DOMHelper.markModified(baseNode);
         if (dataNode == null) {
             domChangeTracker.domChanged();
         }
@@ -112,6 +113,7 @@ class AutoValue<E> implements XBAutoValue<E> {
         if (dataNode == null) {
             return oldValue;
         }
+        DOMHelper.markModified(baseNode);
         if (dataNode.getNodeType() == Node.ATTRIBUTE_NODE) {
             DOMHelper.removeAttribute((Attr) dataNode);
             dataNode = null;
@@ -164,6 +166,7 @@ class AutoValue<E> implements XBAutoValue<E> {
 
     @Override
     public XBAutoValue<E> rename(final String newName) {
+        DOMHelper.markModified(baseNode);
         domChangeTracker.domChanged();
         domChangeTracker.refreshForWriteIfNeeded();
         if (dataNode == null) {
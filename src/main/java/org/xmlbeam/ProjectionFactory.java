@@ -15,7 +15,10 @@
  */
 package org.xmlbeam;
 
+import java.util.List;
+
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.xmlbeam.io.ProjectionIO;
 
 /**
@@ -51,6 +54,18 @@ public interface ProjectionFactory {
      */
     <T> T projectDOMNode(final Node documentOrElement, final Class<T> projectionInterface);
 
+    /**
+     * Creates projections for all nodes of a node list. The projection interface is inspected only
+     * once for the whole batch.
+     * 
+     * @param nodes
+     *            XML DOM nodes. May be documents or elements.
+     * @param projectionInterface
+     *            A Java interface to project the data on.
+     * @return a list with a new instance of projectionInterface for each node.
+     */
+    <T> List<T> projectDOMNodes(final NodeList nodes, final Class<T> projectionInterface);
+
     /**
      * Creates a projection from XML content to Java.
      * 
@@ -17,19 +17,28 @@ package org.xmlbeam;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -45,6 +54,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
+import org.xmlbeam.XBProjector.Flags;
 import org.xmlbeam.XBProjector.IOBuilder;
 import org.xmlbeam.annotation.XBAuto;
 import org.xmlbeam.annotation.XBDelete;
@@ -65,6 +75,7 @@ import org.xmlbeam.types.XBAutoValue;
 import org.xmlbeam.util.IOHelper;
 import org.xmlbeam.util.intern.DOMHelper;
 import org.xmlbeam.util.intern.MethodParamVariableResolver;
+import org.xmlbeam.util.intern.PerThreadXPathExpression;
 import org.xmlbeam.util.intern.Preprocessor;
 import org.xmlbeam.util.intern.ReflectionHelper;
 import org.xmlbeam.util.intern.duplex.DuplexExpression;
@@ -83,82 +94,88 @@ import org.xmlbeam.util.intern.duplex.XBPathParsingException;
 @SuppressWarnings("serial")
 final class ProjectionInvocationHandler implements InvocationHandler, Serializable {
 
-    private Map<MethodSignature, InvocationHandler> getDefaultInvokers(final Object defaultInvokerObject) {
-        final ReflectionInvoker reflectionInvoker = new ReflectionInvoker(defaultInvokerObject);
-        final Map<MethodSignature, InvocationHandler> invokers = new HashMap<MethodSignature, InvocationHandler>();
-        for (Method m : DOMAccess.class.getMethods()) {
-            if (m.getAnnotation(XBWrite.class) == null) {
-                invokers.put(MethodSignature.forMethod(m), reflectionInvoker);
-            }
-        }
-
-        invokers.put(MethodSignature.forVoidMethod("toString"), reflectionInvoker);
-        invokers.put(MethodSignature.forSingleParam("equals", Object.class), reflectionInvoker);
-        invokers.put(MethodSignature.forVoidMethod("hashCode"), reflectionInvoker);
-        return invokers;//Collections.unmodifiableMap(invokers);
+    /**
+     * Handler for a single projection method. Method handlers are shared by all projections of a
+     * projection interface, so state belonging to a single projection is passed with each
+     * invocation.
+     */
+    private interface MethodHandler extends Serializable {
+        Object invoke(ProjectionInvocationHandler projection, Object proxy, Method method, Object[] args) throws Throwable;
     }
 
-    private static class ReflectionInvoker implements InvocationHandler, Serializable {
-        protected final Object obj;
-
-        ReflectionInvoker(final Object obj) {
-            this.obj = obj;
-        }
-
+    /**
+     * Delegates to the {@link DefaultDOMAccessInvoker} of the invoked projection.
+     */
+    private static final MethodHandler DOM_ACCESS_HANDLER = new MethodHandler() {
         @Override
-        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        public Object invoke(final ProjectionInvocationHandler projection, final Object proxy, final Method method, final Object[] args) throws Throwable {
             try {
-                return method.invoke(obj, args);
+                return method.invoke(projection.getDefaultInvokerObject(), args);
             } catch (InvocationTargetException e) {
                 throw e.getCause() == null ? e : e.getCause();
             }
         }
+    };
+
+    private static Map<MethodSignature, MethodHandler> getDefaultInvokers() {
+        final Map<MethodSignature, MethodHandler> invokers = new HashMap<MethodSignature, MethodHandler>();
+        for (Method m : DOMAccess.class.getMethods()) {
+            if (m.getAnnotation(XBWrite.class) == null) {
+                invokers.put(MethodSignature.forMethod(m), DOM_ACCESS_HANDLER);
+            }
+        }
+
+        invokers.put(MethodSignature.forVoidMethod("toString"), DOM_ACCESS_HANDLER);
+        invokers.put(MethodSignature.forSingleParam("equals", Object.class), DOM_ACCESS_HANDLER);
+        invokers.put(MethodSignature.forVoidMethod("hashCode"), DOM_ACCESS_HANDLER);
+        return invokers;//Collections.unmodifiableMap(invokers);
     }
 
-    private static class MixinInvoker extends ReflectionInvoker {
+    private static class MixinInvoker implements MethodHandler {
+        private final Object obj;
         private final Class<?> projectionInterface;
 
         MixinInvoker(final Object obj, final Class<?> projectionInterface) {
-            super(obj);
+            this.obj = obj;
             this.projectionInterface = projectionInterface;
         }
 
         @Override
-        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        public Object invoke(final ProjectionInvocationHandler projection, final Object proxy, final Method method, final Object[] args) throws Throwable {
             injectMeAttribute((DOMAccess) proxy, obj, projectionInterface);
             try {
-                return super.invoke(proxy, method, args);
+                return method.invoke(obj, args);
             } catch (InvocationTargetException e) {
                 throw e.getCause() == null ? e : e.getCause();
             }
         }
     }
 
-    private static abstract class ProjectionMethodInvocationHandler implements InvocationHandler, Serializable {
-
-        private static final InvocationContext EMPTY_INVOCATION_CONTEXT = new InvocationContext(null, null, null, null, null, Object.class, null);
+    private static abstract class ProjectionMethodInvocationHandler implements MethodHandler {
 
         protected final Method method;
         protected final String annotationValue;
         protected final XBProjector projector;
-        protected final Node node;
         private final String docAnnotationValue;
         private final boolean isVoidMethod;
-        protected InvocationContext lastInvocationContext = EMPTY_INVOCATION_CONTEXT;
         protected final Map<String, Integer> methodParameterIndexes;
+        /**
+         * Index of the last invocation context of this method in the projections context array.
+         */
+        private final int contextSlot;
 
-        ProjectionMethodInvocationHandler(final Node node, final Method method, final String annotationValue, final XBProjector projector) {
+        ProjectionMethodInvocationHandler(final Method method, final String annotationValue, final XBProjector projector, final int contextSlot) {
             this.method = method;
             this.annotationValue = annotationValue;
             this.projector = projector;
-            this.node = node;
+            this.contextSlot = contextSlot;
             final XBDocURL annotation = method.getAnnotation(XBDocURL.class);
             this.docAnnotationValue = annotation == null ? null : annotation.value();
             this.isVoidMethod = !ReflectionHelper.hasReturnType(method);
             methodParameterIndexes = ReflectionHelper.getMethodParameterIndexes(method);
         }
 
-        protected Node getNodeForMethod(final Method method, final Object[] args) throws SAXException, IOException, ParserConfigurationException {
+        protected Node getNodeForMethod(final Node node, final Method method, final Object[] args) throws SAXException, IOException, ParserConfigurationException {
             if (docAnnotationValue != null) {
                 String uri = projector.config().getExternalizer().resolveURL(docAnnotationValue, method, args);
                 final Map<String, String> requestParams = ((IOBuilder) projector.io()).filterRequestParamsFromParams(uri, args);
@@ -176,6 +193,24 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
             return Preprocessor.applyParams(projector.config().getExternalizer().resolveXPath(annotationValue, method, args), methodParameterIndexes, args);
         }
 
+        /**
+         * @param projection
+         * @param resolvedXpath
+         * @return the context of the previous invocation on this projection if it is still valid,
+         *         null otherwise.
+         */
+        protected InvocationContext getLastInvocationContext(final ProjectionInvocationHandler projection, final String resolvedXpath) {
+            final InvocationContext lastInvocationContext = projection.getInvocationContext(contextSlot);
+            if ((lastInvocationContext == null) || (!lastInvocationContext.isStillValid(resolvedXpath))) {
+                return null;
+            }
+            return lastInvocationContext;
+        }
+
+        protected void setLastInvocationContext(final ProjectionInvocationHandler projection, final InvocationContext invocationContext) {
+            projection.setInvocationContext(contextSlot, invocationContext);
+        }
+
         /**
          * Determine a methods return value that does not depend on the methods execution. Possible
          * values are void or the proxy itself (would be "this").
@@ -196,17 +231,17 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
             throw new IllegalArgumentException("Method " + method + " has illegal return type \"" + method.getReturnType() + "\". I don't know what to return. I expected void or " + method.getDeclaringClass().getSimpleName());
         }
 
-        abstract protected Object invokeProjection(final String resolvedXpath, final Object proxy, final Object[] args) throws Throwable;
+        abstract protected Object invokeProjection(final ProjectionInvocationHandler projection, final String resolvedXpath, final Object proxy, final Object[] args) throws Throwable;
 
         @Override
-        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        public Object invoke(final ProjectionInvocationHandler projection, final Object proxy, final Method method, final Object[] args) throws Throwable {
             final String xPath = resolveXPath(args);
             final String resolvedXpath = Preprocessor.applyParams(xPath, methodParameterIndexes, args);
             try {
-                return invokeProjection(resolvedXpath, proxy, args);
+                return invokeProjection(projection, resolvedXpath, proxy, args);
             } finally {
                 if (!(this instanceof ReadInvocationHandler)) {
-                    projector.notifyDOMChangeListeners();
+                    projector.notifyDOMChangeListeners(DOMHelper.getOwnerDocumentFor(projection.node));
                 }
             }
         }
@@ -218,37 +253,51 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         protected final Class<?> exceptionType;
         protected final boolean isThrowIfAbsent;
 
-        private XPathInvocationHandler(final Node node, final Method method, final String annotationValue, final XBProjector projector) {
-            super(node, method, annotationValue, projector);
+        private XPathInvocationHandler(final Method method, final String annotationValue, final XBProjector projector, final int contextSlot) {
+            super(method, annotationValue, projector, contextSlot);
             Class<?>[] exceptionTypes = method.getExceptionTypes();
             exceptionType = exceptionTypes.length > 0 ? exceptionTypes[0] : null;
             this.isThrowIfAbsent = exceptionType != null;
         }
 
         @Override
-        final protected Object invokeProjection(final String resolvedXpath, final Object proxy, final Object[] args) throws Throwable {
-            final XPath xPath = projector.config().createXPath(DOMHelper.getOwnerDocumentFor(node));
-
-            if (!lastInvocationContext.isStillValid(resolvedXpath)) {
-                final DuplexExpression duplexExpression = new DuplexXPathParser(projector.config().getUserDefinedNamespaceMapping()).compile(resolvedXpath);
-                String strippedXPath = duplexExpression.getExpressionAsStringWithoutFormatPatterns();
-                MethodParamVariableResolver resolver = null;
-                if (duplexExpression.isUsingVariables()) {
-                    XPathVariableResolver peviousResolver = xPath.getXPathVariableResolver();
-                    resolver = new MethodParamVariableResolver(method, args, duplexExpression, projector.config().getStringRenderer(), peviousResolver);
-                    xPath.setXPathVariableResolver(resolver);
+        final protected Object invokeProjection(final ProjectionInvocationHandler projection, final String resolvedXpath, final Object proxy, final Object[] args) throws Throwable {
+            InvocationContext invocationContext = getLastInvocationContext(projection, resolvedXpath);
+            if (invocationContext == null) {
+                final XPath xPath = projector.config().createXPath(DOMHelper.getOwnerDocumentFor(projection.node));
+                final InvocationContextCacheKey cacheKey = new InvocationContextCacheKey(method, resolvedXpath, xPath);
+                invocationContext = projector.getInvocationContextCache().get(cacheKey);
+                if (invocationContext == null) {
+                    final DuplexExpression duplexExpression = new DuplexXPathParser(projector.config().getUserDefinedNamespaceMapping()).compile(resolvedXpath);
+                    String strippedXPath = duplexExpression.getExpressionAsStringWithoutFormatPatterns();
+                    MethodParamVariableResolver resolver = null;
+                    if (duplexExpression.isUsingVariables()) {
+                        XPathVariableResolver peviousResolver = xPath.getXPathVariableResolver();
+                        resolver = new MethodParamVariableResolver(method, args, duplexExpression, projector.config().getStringRenderer(), peviousResolver);
+                        xPath.setXPathVariableResolver(resolver);
 
+                    }
+                    // Cached contexts are shared between threads.
+                    final XPathExpression xPathExpression = PerThreadXPathExpression.compile(projector.config(), xPath, strippedXPath);
+                    final Class<?> targetComponentType = findTargetComponentType(method);
+
+                    invocationContext = new InvocationContext(resolvedXpath, xPath, xPathExpression, duplexExpression, resolver, targetComponentType, projector);
+                    if (resolver == null) {
+                        // Contexts bound to method parameters can not be shared.
+                        invocationContext = projector.getInvocationContextCache().put(cacheKey, invocationContext);
+                    }
                 }
-                final XPathExpression xPathExpression = xPath.compile(strippedXPath);
-                final Class<?> targetComponentType = findTargetComponentType(method);
-
-                lastInvocationContext = new InvocationContext(resolvedXpath, xPath, xPathExpression, duplexExpression, resolver, targetComponentType, projector);
+                setLastInvocationContext(projection, invocationContext);
+            }
+            invocationContext.updateMethodArgs(args);
+            try {
+                return invokeXpathProjection(projection, invocationContext, proxy, args);
+            } finally {
+                invocationContext.clearMethodArgs();
             }
-            lastInvocationContext.updateMethodArgs(args);
-            return invokeXpathProjection(lastInvocationContext, proxy, args);
         }
 
-        abstract protected Object invokeXpathProjection(final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable;
+        abstract protected Object invokeXpathProjection(final ProjectionInvocationHandler projection, final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable;
     }
 
     static class ReadInvocationHandler extends XPathInvocationHandler {
@@ -256,25 +305,32 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         private final boolean wrappedInOptional;
         private final boolean isEvaluateAsProjected;
         private final Class<?> returnType;
-        private final boolean isConvertable;
+        private final boolean isEvaluateAsValue;
         private final boolean isReturnAsNode;
         private final boolean isEvaluateAsList;
         private final boolean isEvaluateAsArray;
         private final boolean isEvaluateAsSubProjection;
         private final boolean isEvaluateAsMap;
         private final boolean isReturnAsStream;
+        private final boolean isReturnAsPrimitiveStream;
+        private final boolean isReturnLazy;
+        private final boolean isReturnAsIterator;
 
-        ReadInvocationHandler(final Node node, final Method method, final String annotationValue, final XBProjector projector, final boolean absentIsEmpty) {
-            super(node, method, annotationValue, projector);
+        ReadInvocationHandler(final Method method, final String annotationValue, final XBProjector projector, final int contextSlot, final boolean absentIsEmpty) {
+            super(method, annotationValue, projector, contextSlot);
             final Class<?> methodReturnType = method.getReturnType();
-            this.isEvaluateAsList = List.class.equals(methodReturnType) || ReflectionHelper.isStreamClass(methodReturnType) || XBAutoList.class.equals(methodReturnType);
+            this.isReturnAsIterator = Iterator.class.equals(methodReturnType);
+            this.isReturnLazy = Iterable.class.equals(methodReturnType) || isReturnAsIterator;
+            this.isEvaluateAsList = List.class.equals(methodReturnType) || ReflectionHelper.isStreamClass(methodReturnType) || XBAutoList.class.equals(methodReturnType) || isReturnLazy;
             this.isEvaluateAsMap = XBAutoMap.class.equals(methodReturnType) || Map.class.equals(methodReturnType);
             this.isReturnAsStream = ReflectionHelper.isStreamClass(methodReturnType);
-            this.isEvaluateAsArray = methodReturnType.isArray();
+            this.isReturnAsPrimitiveStream = ReflectionHelper.getPrimitiveStreamComponentType(methodReturnType) != null;
+            this.isEvaluateAsArray = methodReturnType.isArray() || isReturnAsPrimitiveStream;
             this.wrappedInOptional = ReflectionHelper.isOptional(method.getGenericReturnType());
             this.isEvaluateAsProjected = Map.class.equals(methodReturnType) || XBAutoMap.class.equals(methodReturnType) || XBAutoValue.class.equals(methodReturnType) || (method.getAnnotation(XBAuto.class) != null);
             this.returnType = (wrappedInOptional || isEvaluateAsProjected) ? ReflectionHelper.getParameterType(method.getGenericReturnType()) : methodReturnType;
-            this.isConvertable = (!isEvaluateAsList) && (!isEvaluateAsMap) && (!isEvaluateAsArray) && (!isReturnAsStream) && projector.config().getTypeConverter().isConvertable(returnType);
+            // Conversions may be registered after the model was created, so convertibility is checked on invocation.
+            this.isEvaluateAsValue = (!isEvaluateAsList) && (!isEvaluateAsMap) && (!isEvaluateAsArray) && (!isReturnAsStream);
             this.isReturnAsNode = Node.class.isAssignableFrom(returnType);
             if (wrappedInOptional && (isEvaluateAsArray || isEvaluateAsList || isEvaluateAsProjected)) {
                 throw new IllegalArgumentException("Method " + method + " must not declare an optional return type of AutoValue, List or Array. Lists, and arrays may be empty but will never be null.");
@@ -286,8 +342,8 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         }
 
         @Override
-        public Object invokeXpathProjection(final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
-            final Object result = invokeReadProjection(invocationContext, proxy, args);
+        public Object invokeXpathProjection(final ProjectionInvocationHandler projection, final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
+            final Object result = invokeReadProjection(projection.node, invocationContext, proxy, args, projection.isLockingDocument());
             if ((result == null) && (isThrowIfAbsent)) {
                 throwDeclaredException(invocationContext, args, exceptionType);
             }
@@ -295,8 +351,13 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         }
 
         @SuppressWarnings("rawtypes")
-        private Object invokeReadProjection(final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
-            final Node node = getNodeForMethod(method, args);
+        /**
+         * @param isLockingDocument
+         *            true if the invocation holds a document lock. Results must not read the DOM
+         *            after the lock is released then.
+         */
+        private Object invokeReadProjection(final Node projectionNode, final InvocationContext invocationContext, final Object proxy, final Object[] args, final boolean isLockingDocument) throws Throwable {
+            final Node node = getNodeForMethod(projectionNode, method, args);
             final ExpressionType expressionType = invocationContext.getDuplexExpression().getExpressionType();
             final XPathExpression expression = invocationContext.getxPathExpression();
 
@@ -304,7 +365,7 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
                 return new AutoValue(node, invocationContext);
             }
 
-            if (isConvertable) {
+            if (isEvaluateAsValue && projector.config().getTypeConverter().isConvertable(returnType)) {
                 String data;
                 Node dataNode = null;
                 if (expressionType.isMustEvalAsString()) {
@@ -321,7 +382,7 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
                 }
 
                 try {
-                    final Object result = projector.config().getTypeConverter().convertTo(returnType, data, invocationContext.getExpressionFormatPattern());
+                    final Object result = DefaultXPathEvaluator.convertText(invocationContext, returnType, data);
 
                     return wrappedInOptional ? ReflectionHelper.createOptional(result) : result;
                 } catch (NumberFormatException e) {
@@ -340,16 +401,26 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
             if (isEvaluateAsList) {
                 assert !wrappedInOptional : "Projection methods returning list will never return null";
                 if (XBAutoList.class.equals(returnType) || (isEvaluateAsProjected)) {
-                    return new AutoList(node, invocationContext);
+                    final AutoList autoList = new AutoList(node, invocationContext);
+                    return isReturnAsIterator ? autoList.iterator() : autoList;
                 }
-
-                final List<?> result = DefaultXPathEvaluator.evaluateAsList(expression, node, method, invocationContext);
-                return isReturnAsStream ? ReflectionHelper.toStream(result) : result;
+                if (isReturnAsStream || isReturnLazy) {
+                    // A lazy view would convert nodes after the lock is released, so locked projections materialize the list.
+                    final List<?> list = isLockingDocument ? DefaultXPathEvaluator.evaluateAsList(expression, node, method, invocationContext) : DefaultXPathEvaluator.evaluateAsLazyList(expression, node, method, invocationContext);
+                    if (isReturnAsIterator) {
+                        return list.iterator();
+                    }
+                    return isReturnAsStream ? ReflectionHelper.toStream(list) : list;
+                }
+                return DefaultXPathEvaluator.evaluateAsList(expression, node, method, invocationContext);
             }
             if (isEvaluateAsArray) {
                 assert !wrappedInOptional : "Projection methods returning array will never return null";
-                final List<?> list = DefaultXPathEvaluator.evaluateAsList(expression, node, method, invocationContext);
-                return list.toArray((Object[]) java.lang.reflect.Array.newInstance(returnType.getComponentType(), list.size()));
+                if (invocationContext.getTargetComponentType().isPrimitive()) {
+                    final Object array = DefaultXPathEvaluator.evaluateAsPrimitiveArray(expression, node, invocationContext);
+                    return isReturnAsPrimitiveStream ? ReflectionHelper.toPrimitiveStream(array) : array;
+                }
+                return DefaultXPathEvaluator.evaluateAsArray(expression, node, method, invocationContext);
             }
             if (isEvaluateAsSubProjection) {
                 final Node newNode = (Node) expression.evaluate(node, XPathConstants.NODE);
@@ -373,8 +444,8 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
          * @param value
          * @param projector
          */
-        public UpdateInvocationHandler(final Node node, final Method m, final String value, final XBProjector projector) {
-            super(node, m, value, projector);
+        public UpdateInvocationHandler(final Method m, final String value, final XBProjector projector, final int contextSlot) {
+            super(m, value, projector, contextSlot);
             findIndexOfValue = findIndexOfValue(m);
             if (isMultiValue(m.getParameterTypes()[findIndexOfValue])) {
                 throw new IllegalArgumentException("Method " + m + " was declated as updater but with multiple values. Update is possible for single values only. Consider using @XBWrite.");
@@ -382,9 +453,10 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         }
 
         @Override
-        public Object invokeXpathProjection(final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
+        public Object invokeXpathProjection(final ProjectionInvocationHandler projection, final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
+            final Node projectionNode = projection.node;
             assert ReflectionHelper.hasParameters(method);
-            final Node node = getNodeForMethod(method, args);
+            final Node node = getNodeForMethod(projectionNode, method, args);
 //            final Document document = DOMHelper.getOwnerDocumentFor(node);
 //            final XPath xPath = projector.config().createXPath(document);
             final XPathExpression expression = invocationContext.getxPathExpression();
@@ -432,12 +504,13 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
          * @param value
          * @param projector
          */
-        public DeleteInvocationHandler(final Node node, final Method m, final String value, final XBProjector projector) {
-            super(node, m, value, projector);
+        public DeleteInvocationHandler(final Method m, final String value, final XBProjector projector, final int contextSlot) {
+            super(m, value, projector, contextSlot);
         }
 
         @Override
-        public Object invokeXpathProjection(final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
+        public Object invokeXpathProjection(final ProjectionInvocationHandler projection, final InvocationContext invocationContext, final Object proxy, final Object[] args) throws Throwable {
+            final Node node = projection.node;
 
 //            try {
 //                if (ReflectionHelper.mayProvideParameterNames()) {
@@ -482,8 +555,8 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
          * @param value
          * @param projector
          */
-        public WriteInvocationHandler(final Node node, final Method m, final String value, final XBProjector projector) {
-            super(node, m, value, projector);
+        public WriteInvocationHandler(final Method m, final String value, final XBProjector projector, final int contextSlot) {
+            super(m, value, projector, contextSlot);
             findIndexOfValue = findIndexOfValue(m);
         }
 
@@ -561,9 +634,9 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         }
 
         @Override
-        public Object invokeProjection(final String resolvedXpath, final Object proxy, final Object[] args) throws Throwable {
+        public Object invokeProjection(final ProjectionInvocationHandler projection, final String resolvedXpath, final Object proxy, final Object[] args) throws Throwable {
             //   final String pathToElement = resolvedXpath.replaceAll("\\[@", "[attribute::").replaceAll("/?@.*", "").replaceAll("\\[attribute::", "[@");
-            lastInvocationContext.updateMethodArgs(args);
+            final Node node = projection.node;
             final Document document = DOMHelper.getOwnerDocumentFor(node);
             assert document != null;
             final Object valueToSet = args[findIndexOfValue];
@@ -576,19 +649,31 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
                 return handeRootElementReplacement(proxy, method, document, valueToSet);
             }
             final boolean wildCardTarget = resolvedXpath.endsWith("/*");
+            InvocationContext boundInvocationContext = null;
             try {
-                if (!lastInvocationContext.isStillValid(resolvedXpath)) {
-                    final DuplexExpression duplexExpression = wildCardTarget ? new DuplexXPathParser(projector.config().getUserDefinedNamespaceMapping()).compile(resolvedXpath.substring(0, resolvedXpath.length() - 2))
-                            : new DuplexXPathParser(projector.config().getUserDefinedNamespaceMapping()).compile(resolvedXpath);
-                    MethodParamVariableResolver resolver = null;
-                    if (duplexExpression.isUsingVariables()) {
-                        resolver = new MethodParamVariableResolver(method, args, duplexExpression, projector.config().getStringRenderer(), null);
-                        duplexExpression.setXPathVariableResolver(resolver);
+                InvocationContext invocationContext = getLastInvocationContext(projection, resolvedXpath);
+                if (invocationContext == null) {
+                    final InvocationContextCacheKey cacheKey = new InvocationContextCacheKey(method, resolvedXpath, null);
+                    invocationContext = projector.getInvocationContextCache().get(cacheKey);
+                    if (invocationContext == null) {
+                        final DuplexExpression duplexExpression = wildCardTarget ? new DuplexXPathParser(projector.config().getUserDefinedNamespaceMapping()).compile(resolvedXpath.substring(0, resolvedXpath.length() - 2))
+                                : new DuplexXPathParser(projector.config().getUserDefinedNamespaceMapping()).compile(resolvedXpath);
+                        MethodParamVariableResolver resolver = null;
+                        if (duplexExpression.isUsingVariables()) {
+                            resolver = new MethodParamVariableResolver(method, args, duplexExpression, projector.config().getStringRenderer(), null);
+                            duplexExpression.setXPathVariableResolver(resolver);
+                        }
+                        Class<?> targetComponentType = findTargetComponentType(method);
+                        invocationContext = new InvocationContext(resolvedXpath, null, null, duplexExpression, resolver, targetComponentType, projector);
+                        if (resolver == null) {
+                            invocationContext = projector.getInvocationContextCache().put(cacheKey, invocationContext);
+                        }
                     }
-                    Class<?> targetComponentType = findTargetComponentType(method);
-                    lastInvocationContext = new InvocationContext(resolvedXpath, null, null, duplexExpression, resolver, targetComponentType, projector);
+                    setLastInvocationContext(projection, invocationContext);
                 }
-                final DuplexExpression duplexExpression = lastInvocationContext.getDuplexExpression();
+                invocationContext.updateMethodArgs(args);
+                boundInvocationContext = invocationContext;
+                final DuplexExpression duplexExpression = invocationContext.getDuplexExpression();
                 if (duplexExpression.getExpressionType().isMustEvalAsString()) {
                     throw new XBPathException("Unwriteable xpath selector used ", method, resolvedXpath);
                 }
@@ -681,109 +766,411 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
                 return getProxyReturnValueForMethod(proxy, method, Integer.valueOf(1));
             } catch (XBPathParsingException e) {
                 throw new XBPathException(e, method, resolvedXpath);
+            } finally {
+                if (boundInvocationContext != null) {
+                    boundInvocationContext.clearMethodArgs();
+                }
             }
         }
     }
 
-    private static final InvocationHandler DEFAULT_METHOD_INVOCATION_HANDLER = new InvocationHandler() {
+    /**
+     * Key for the projector wide invocation context cache. Compiled expressions depend on the
+     * method, the resolved path and the namespace context, variable and function resolvers of the
+     * XPath instance used to compile them.
+     */
+    private static final class InvocationContextCacheKey {
+        private final Method method;
+        private final String resolvedXpath;
+        private final Object namespaceContext;
+        private final Object variableResolver;
+        private final Object functionResolver;
+        private final int hashCode;
+
+        InvocationContextCacheKey(final Method method, final String resolvedXpath, final XPath xPath) {
+            this.method = method;
+            this.resolvedXpath = resolvedXpath;
+            this.namespaceContext = xPath == null ? null : xPath.getNamespaceContext();
+            this.variableResolver = xPath == null ? null : xPath.getXPathVariableResolver();
+            this.functionResolver = xPath == null ? null : xPath.getXPathFunctionResolver();
+            int h = (31 * method.hashCode()) + resolvedXpath.hashCode();
+            h = (31 * h) + (namespaceContext == null ? 0 : namespaceContext.hashCode());
+            h = (31 * h) + (variableResolver == null ? 0 : variableResolver.hashCode());
+            this.hashCode = (31 * h) + (functionResolver == null ? 0 : functionResolver.hashCode());
+        }
 
         @Override
-        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-            return ReflectionHelper.invokeDefaultMethod(method, args, proxy);
+        public int hashCode() {
+            return hashCode;
         }
-    };
 
-    private static final class OverrideByDefaultMethodInvocationHandler implements InvocationHandler {
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof InvocationContextCacheKey)) {
+                return false;
+            }
+            final InvocationContextCacheKey other = (InvocationContextCacheKey) obj;
+            return (hashCode == other.hashCode) && method.equals(other.method) && resolvedXpath.equals(other.resolvedXpath) && equalsMaybeNull(namespaceContext, other.namespaceContext) && equalsMaybeNull(variableResolver, other.variableResolver)
+                    && equalsMaybeNull(functionResolver, other.functionResolver);
+        }
+
+        private static boolean equalsMaybeNull(final Object a, final Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Invokes the default implementation of a method. The invoker is resolved on first use and
+     * shared by all projections of the interface.
+     */
+    private static final class DefaultMethodInvocationHandler implements MethodHandler {
+        private static final Object[] NO_ARGS = new Object[0];
         private final Method defaultMethod;
+        private transient volatile ReflectionHelper.MethodInvoker invoker;
 
-        OverrideByDefaultMethodInvocationHandler(final Method defaultMethod) {
+        DefaultMethodInvocationHandler(final Method defaultMethod) {
             this.defaultMethod = defaultMethod;
         }
 
         @Override
-        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-            return DEFAULT_METHOD_INVOCATION_HANDLER.invoke(proxy, defaultMethod, args);
+        public Object invoke(final ProjectionInvocationHandler projection, final Object proxy, final Method method, final Object[] args) throws Throwable {
+            ReflectionHelper.MethodInvoker methodInvoker = invoker;
+            if (methodInvoker == null) {
+                methodInvoker = ReflectionHelper.resolveDefaultMethodInvoker(defaultMethod);
+                invoker = methodInvoker;
+            }
+            return methodInvoker.invoke(proxy, args == null ? NO_ARGS : args);
         }
     }
 
-    private final Map<MethodSignature, InvocationHandler> handlers = new HashMap<MethodSignature, InvocationHandler>();
-    private final Map<MethodSignature, InvocationHandler> mixinHandlers = new HashMap<MethodSignature, InvocationHandler>();
+    private static final MethodHandler READ_ONLY_HANDLER = new MethodHandler() {
 
-    ProjectionInvocationHandler(final XBProjector projector, final Node node, final Class<?> projectionInterface, final Map<Class<?>, Object> mixins, final boolean toStringRendersXML, final boolean absentIsEmpty) {
-        final Object defaultInvokerObject = DefaultDOMAccessInvoker.create(projectionInterface, node, projector, toStringRendersXML);
-        final Map<MethodSignature, InvocationHandler> defaultInvocationHandlers = getDefaultInvokers(defaultInvokerObject);
+        @Override
+        public Object invoke(final ProjectionInvocationHandler projection, final Object proxy, final Method method, final Object[] args) throws Throwable {
+            throw new IllegalStateException("Method " + method + " would change the document, but the projector was created with flag READ_ONLY_CONCURRENT.");
+        }
+    };
 
-        for (Entry<Class<?>, Object> e : mixins.entrySet()) {
-            for (Method m : e.getKey().getMethods()) {
-                mixinHandlers.put(MethodSignature.forMethod(m), new MixinInvoker(e.getValue(), projectionInterface));
-            }
+    /**
+     * Handler for a method and whether its arguments need to be unwrapped before invocation.
+     */
+    private static final class MethodDispatch {
+        private final MethodHandler handler;
+        private final boolean unwrapArgs;
+        private final boolean readOnly;
+
+        MethodDispatch(final MethodHandler handler, final boolean unwrapArgs) {
+            this.handler = handler;
+            this.unwrapArgs = unwrapArgs;
+            // Default methods and mixins may call writing methods, so they need the write lock.
+            this.readOnly = (handler instanceof ReadInvocationHandler) || (handler == DOM_ACCESS_HANDLER) || (handler == READ_ONLY_HANDLER);
         }
+    }
 
-        handlers.putAll(defaultInvocationHandlers);
+    /**
+     * Everything about a projection interface that does not depend on the projected node. A model
+     * is created once per projection interface and projector and is shared by all projections of
+     * this interface.
+     */
+    static final class ProjectionModel implements Serializable {
 
-        List<Class<?>> allSuperInterfaces = ReflectionHelper.findAllSuperInterfaces(projectionInterface);
-        for (Class<?> i7e : allSuperInterfaces) {
-            for (Method m : i7e.getDeclaredMethods()) {
-                if (Modifier.isPrivate(m.getModifiers())) {
-                    // ignore private methods
-                    continue;
-                }
-                final MethodSignature methodSignature = MethodSignature.forMethod(m);
-                if (ReflectionHelper.isDefaultMethod(m)) {
-                    handlers.put(methodSignature, DEFAULT_METHOD_INVOCATION_HANDLER);
-                    final XBOverride xbOverride = m.getAnnotation(XBOverride.class);
-                    if (xbOverride != null) {
-                        handlers.put(methodSignature.overridenBy(xbOverride.value()), new OverrideByDefaultMethodInvocationHandler(m));
-                    }
-                    continue;
+        private final Class<?> projectionInterface;
+        private final Class<?>[] proxyInterfaces;
+        private final Map<MethodSignature, MethodHandler> handlers;
+        private final int invocationContextSlots;
+        private final XBProjector projector;
+        private final boolean toStringRendersXML;
+
+        /**
+         * Proxy.newProxyInstance() looks up the proxy class and its constructor on every call. We
+         * take the constructor from the first proxy and reuse it for this projection interface.
+         */
+        private transient volatile Constructor<?> proxyConstructor;
+        private transient boolean proxyConstructorUnavailable;
+
+        /**
+         * Proxies pass the same Method instances on every call, so we resolve each method only
+         * once. Copy on write, reads do not lock.
+         */
+        private transient volatile Map<Method, MethodDispatch> dispatchTable;
+
+        private ProjectionModel(final XBProjector projector, final Class<?> projectionInterface, final Map<MethodSignature, MethodHandler> handlers, final int invocationContextSlots) {
+            this.projector = projector;
+            this.toStringRendersXML = projector.getFlags().contains(Flags.TO_STRING_RENDERS_XML);
+            this.projectionInterface = projectionInterface;
+            this.handlers = handlers;
+            this.invocationContextSlots = invocationContextSlots;
+            final Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+            interfaces.add(projectionInterface);
+            interfaces.add(DOMAccess.class);
+            interfaces.add(Serializable.class);
+            this.proxyInterfaces = interfaces.toArray(new Class<?>[interfaces.size()]);
+        }
+
+        /**
+         * @return the projection interface
+         */
+        Class<?> getProjectionInterface() {
+            return projectionInterface;
+        }
+
+        /**
+         * @return interfaces a proxy for this projection interface needs to implement.
+         */
+        Class<?>[] getProxyInterfaces() {
+            return proxyInterfaces;
+        }
+
+        /**
+         * @param method
+         * @return dispatch entry for method or null if there is no handler for this method.
+         */
+        MethodDispatch getMethodDispatch(final Method method) {
+            final Map<Method, MethodDispatch> table = dispatchTable;
+            if (table != null) {
+                final MethodDispatch dispatch = table.get(method);
+                if (dispatch != null) {
+                    return dispatch;
                 }
-                if (defaultInvocationHandlers.containsKey(methodSignature)) {
-                    continue;
+            }
+            final MethodHandler handler = handlers.get(MethodSignature.forMethod(method));
+            if (handler == null) {
+                return null;
+            }
+            final MethodDispatch dispatch = new MethodDispatch(handler, hasUnwrappableParameter(method));
+            synchronized (this) {
+                final Map<Method, MethodDispatch> newTable = dispatchTable == null ? new IdentityHashMap<Method, MethodDispatch>() : new IdentityHashMap<Method, MethodDispatch>(dispatchTable);
+                newTable.put(method, dispatch);
+                dispatchTable = newTable;
+            }
+            return dispatch;
+        }
+
+        /**
+         * @param invocationHandler
+         * @return a new proxy instance implementing the projection interface.
+         */
+        Object newProxyInstance(final InvocationHandler invocationHandler) {
+            final Constructor<?> constructor = proxyConstructor;
+            if (constructor == null) {
+                return newFirstProxyInstance(invocationHandler);
+            }
+            try {
+                return constructor.newInstance(invocationHandler);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            } catch (IllegalAccessException e) {
+                proxyConstructorUnavailable = true;
+            } catch (InstantiationException e) {
+                proxyConstructorUnavailable = true;
+            }
+            proxyConstructor = null;
+            return Proxy.newProxyInstance(projectionInterface.getClassLoader(), proxyInterfaces, invocationHandler);
+        }
+
+        private Object newFirstProxyInstance(final InvocationHandler invocationHandler) {
+            final Object proxy = Proxy.newProxyInstance(projectionInterface.getClassLoader(), proxyInterfaces, invocationHandler);
+            if (proxyConstructorUnavailable) {
+                return proxy;
+            }
+            final Class<?> proxyClass = proxy.getClass();
+            if (!Modifier.isPublic(proxyClass.getModifiers())) {
+                // Proxies for non public interfaces live in the interfaces package.
+                proxyConstructorUnavailable = true;
+                return proxy;
+            }
+            try {
+                proxyConstructor = proxyClass.getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                proxyConstructorUnavailable = true;
+            } catch (SecurityException e) {
+                proxyConstructorUnavailable = true;
+            }
+            return proxy;
+        }
+
+        /**
+         * Inspect the projection interface and create handlers for all methods. The projection
+         * interface must be validated before.
+         *
+         * @param projector
+         * @param projectionInterface
+         * @param mixins
+         * @param absentIsEmpty
+         * @param readOnly
+         *            true if methods changing the document should be rejected
+         * @return a new model for the projection interface
+         */
+        static ProjectionModel create(final XBProjector projector, final Class<?> projectionInterface, final Map<Class<?>, Object> mixins, final boolean absentIsEmpty, final boolean readOnly) {
+            final Map<MethodSignature, MethodHandler> defaultInvocationHandlers = getDefaultInvokers();
+            final Map<MethodSignature, MethodHandler> mixinHandlers = new HashMap<MethodSignature, MethodHandler>();
+            final Map<MethodSignature, MethodHandler> handlers = new HashMap<MethodSignature, MethodHandler>();
+            int slots = 0;
+
+            for (Entry<Class<?>, Object> e : mixins.entrySet()) {
+                final MixinInvoker mixinInvoker = new MixinInvoker(e.getValue(), projectionInterface);
+                for (Method m : e.getKey().getMethods()) {
+                    mixinHandlers.put(MethodSignature.forMethod(m), mixinInvoker);
                 }
-                {
-                    final XBRead readAnnotation = m.getAnnotation(XBRead.class);
-                    if (readAnnotation != null) {
-                        handlers.put(methodSignature, new ReadInvocationHandler(node, m, readAnnotation.value(), projector, absentIsEmpty));
+            }
+
+            handlers.putAll(defaultInvocationHandlers);
+
+            List<Class<?>> allSuperInterfaces = ReflectionHelper.findAllSuperInterfaces(projectionInterface);
+            for (Class<?> i7e : allSuperInterfaces) {
+                for (Method m : i7e.getDeclaredMethods()) {
+                    if (Modifier.isPrivate(m.getModifiers())) {
+                        // ignore private methods
                         continue;
                     }
-                }
-                {
-                    final XBAuto bindAnnotation = m.getAnnotation(XBAuto.class);
-                    if (bindAnnotation != null) {
-                        handlers.put(methodSignature, new ReadInvocationHandler(node, m, bindAnnotation.value(), projector, absentIsEmpty));
+                    final MethodSignature methodSignature = MethodSignature.forMethod(m);
+                    if (ReflectionHelper.isDefaultMethod(m)) {
+                        final MethodHandler defaultMethodHandler = new DefaultMethodInvocationHandler(m);
+                        handlers.put(methodSignature, defaultMethodHandler);
+                        final XBOverride xbOverride = m.getAnnotation(XBOverride.class);
+                        if (xbOverride != null) {
+                            handlers.put(methodSignature.overridenBy(xbOverride.value()), defaultMethodHandler);
+                        }
                         continue;
                     }
-                }
-                {
-                    final XBUpdate updateAnnotation = m.getAnnotation(XBUpdate.class);
-                    if (updateAnnotation != null) {
-                        handlers.put(methodSignature, new UpdateInvocationHandler(node, m, updateAnnotation.value(), projector));
+                    if (defaultInvocationHandlers.containsKey(methodSignature)) {
                         continue;
                     }
-                }
-                {
-                    final XBWrite writeAnnotation = m.getAnnotation(XBWrite.class);
-                    if (writeAnnotation != null) {
-                        handlers.put(methodSignature, new WriteInvocationHandler(node, m, writeAnnotation.value(), projector));
-                        continue;
+                    {
+                        final XBRead readAnnotation = m.getAnnotation(XBRead.class);
+                        if (readAnnotation != null) {
+                            handlers.put(methodSignature, new ReadInvocationHandler(m, readAnnotation.value(), projector, slots++, absentIsEmpty));
+                            continue;
+                        }
                     }
-                }
-                {
-                    final XBDelete delAnnotation = m.getAnnotation(XBDelete.class);
-                    if (delAnnotation != null) {
-                        handlers.put(methodSignature, new DeleteInvocationHandler(node, m, delAnnotation.value(), projector));
+                    {
+                        final XBAuto bindAnnotation = m.getAnnotation(XBAuto.class);
+                        if (bindAnnotation != null) {
+                            handlers.put(methodSignature, new ReadInvocationHandler(m, bindAnnotation.value(), projector, slots++, absentIsEmpty));
+                            continue;
+                        }
+                    }
+                    {
+                        final XBUpdate updateAnnotation = m.getAnnotation(XBUpdate.class);
+                        if (updateAnnotation != null) {
+                            handlers.put(methodSignature, readOnly ? READ_ONLY_HANDLER : new UpdateInvocationHandler(m, updateAnnotation.value(), projector, slots++));
+                            continue;
+                        }
+                    }
+                    {
+                        final XBWrite writeAnnotation = m.getAnnotation(XBWrite.class);
+                        if (writeAnnotation != null) {
+                            handlers.put(methodSignature, readOnly ? READ_ONLY_HANDLER : new WriteInvocationHandler(m, writeAnnotation.value(), projector, slots++));
+                            continue;
+                        }
+                    }
+                    {
+                        final XBDelete delAnnotation = m.getAnnotation(XBDelete.class);
+                        if (delAnnotation != null) {
+                            handlers.put(methodSignature, readOnly ? READ_ONLY_HANDLER : new DeleteInvocationHandler(m, delAnnotation.value(), projector, slots++));
+                            continue;
+                        }
+                    }
+
+                    if (mixinHandlers.containsKey(methodSignature)) {
                         continue;
                     }
-                }
 
-                if (mixinHandlers.containsKey(methodSignature)) {
-                    continue;
+                    throw new IllegalArgumentException("I don't known how to handle method " + m + ". Did you forget to add a XB*-annotation or to register a mixin?");
                 }
-
-                throw new IllegalArgumentException("I don't known how to handle method " + m + ". Did you forget to add a XB*-annotation or to register a mixin?");
             }
+            // Mixins take precedence over all other handlers.
+            handlers.putAll(mixinHandlers);
+            return new ProjectionModel(projector, projectionInterface, handlers, slots);
+        }
+    }
+
+    private final ProjectionModel model;
+    private final Node node;
+
+    /**
+     * Implementation of DOMAccess and Object methods. Most projections never call these, so it is
+     * created on first use to keep projections of large node sets small. This is always done, not
+     * only on request: the invoker is immutable and built from the node and the model only, so an
+     * invoker created later behaves exactly like one created with the projection.
+     */
+    private volatile DefaultDOMAccessInvoker defaultInvokerObject;
+
+    /**
+     * Document to synchronize on, or null if concurrent access is not prevented.
+     */
+    private final Document documentLock;
+
+    /**
+     * Lock shared by all projections of the document, or null if readers and writers are not
+     * separated.
+     */
+    private final ReadWriteLock readWriteLock;
+
+    /**
+     * Contexts of the last invocation for each projection method. Created on first use. Concurrent
+     * readers may replace each others contexts, which only costs a cache lookup.
+     */
+    private transient volatile InvocationContext[] invocationContexts;
+
+    /**
+     * @param synchronizeOnDocument
+     * @param readWriteLockOnDocument
+     *            locking as resolved by the projector from its flags. At most one may be true.
+     */
+    ProjectionInvocationHandler(final Node node, final ProjectionModel model, final boolean synchronizeOnDocument, final boolean readWriteLockOnDocument) {
+        this(node, model, synchronizeOnDocument ? DOMHelper.getOwnerDocumentFor(node) : null, readWriteLockOnDocument ? DOMHelper.getReadWriteLockFor(DOMHelper.getOwnerDocumentFor(node)) : null);
+    }
+
+    /**
+     * Constructor for callers that resolved the locks of the owner document already.
+     *
+     * @param documentLock
+     *            document to synchronize on or null
+     * @param readWriteLock
+     *            lock of the owner document or null
+     */
+    ProjectionInvocationHandler(final Node node, final ProjectionModel model, final Document documentLock, final ReadWriteLock readWriteLock) {
+        assert (documentLock == null) || (readWriteLock == null) : "Only one kind of lock may be used";
+        this.model = model;
+        this.node = node;
+        this.readWriteLock = readWriteLock;
+        this.documentLock = documentLock;
+    }
+
+    /**
+     * @return true if invocations hold a lock on the owner document.
+     */
+    boolean isLockingDocument() {
+        return (documentLock != null) || (readWriteLock != null);
+    }
+
+    private DefaultDOMAccessInvoker getDefaultInvokerObject() {
+        DefaultDOMAccessInvoker invoker = defaultInvokerObject;
+        if (invoker == null) {
+            // Concurrent first calls may each create an invoker and one of them wins. Both are
+            // equal and hold no state of their own, so using the other one does no harm.
+            invoker = DefaultDOMAccessInvoker.create(model.getProjectionInterface(), node, model.projector, model.toStringRendersXML);
+            defaultInvokerObject = invoker;
         }
+        return invoker;
+    }
 
+    private InvocationContext getInvocationContext(final int slot) {
+        final InvocationContext[] contexts = invocationContexts;
+        return contexts == null ? null : contexts[slot];
+    }
+
+    private void setInvocationContext(final int slot, final InvocationContext invocationContext) {
+        InvocationContext[] contexts = invocationContexts;
+        if (contexts == null) {
+            contexts = new InvocationContext[model.invocationContextSlots];
+            invocationContexts = contexts;
+        }
+        contexts[slot] = invocationContext;
     }
 
     /**
@@ -864,24 +1251,50 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
      */
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-        unwrapArgs(method.getParameterTypes(), args);
-        if (!mixinHandlers.isEmpty()) {
-            MethodSignature methodSignature = MethodSignature.forMethod(method);
-            if (mixinHandlers.containsKey(methodSignature)) {
-                return mixinHandlers.get(methodSignature).invoke(proxy, method, args);
-            }
+        final MethodDispatch dispatch = model.getMethodDispatch(method);
+        if (dispatch == null) {
+            throw new IllegalArgumentException("I don't known how to invoke method " + method + ". Did you forget to add a XB*-annotation or to register a mixin?");
         }
-
-        final InvocationHandler invocationHandler = handlers.get(MethodSignature.forMethod(method));
-        if (invocationHandler != null) {
+        // Unwrap before locking, a Callable might invoke other projection methods.
+        if (dispatch.unwrapArgs) {
+            unwrapArgs(method.getParameterTypes(), args);
+        }
+        if (readWriteLock != null) {
+            final Lock lock = dispatch.readOnly ? readWriteLock.readLock() : readWriteLock.writeLock();
+            lock.lock();
             try {
-                return invocationHandler.invoke(proxy, method, args);
-            } catch (XPathExpressionException e) {
-                throw new XBPathException(e, method, "??");
+                return dispatch(dispatch, proxy, method, args);
+            } finally {
+                lock.unlock();
             }
         }
+        if (documentLock == null) {
+            return dispatch(dispatch, proxy, method, args);
+        }
+        synchronized (documentLock) {
+            return dispatch(dispatch, proxy, method, args);
+        }
+    }
 
-        throw new IllegalArgumentException("I don't known how to invoke method " + method + ". Did you forget to add a XB*-annotation or to register a mixin?");
+    private Object dispatch(final MethodDispatch dispatch, final Object proxy, final Method method, final Object[] args) throws Throwable {
+        try {
+            return dispatch.handler.invoke(this, proxy, method, args);
+        } catch (XPathExpressionException e) {
+            throw new XBPathException(e, method, "??");
+        }
+    }
+
+    /**
+     * @param method
+     * @return true if a parameter may be a Callable or Supplier that needs to be unwrapped.
+     */
+    private static boolean hasUnwrappableParameter(final Method method) {
+        for (Class<?> type : method.getParameterTypes()) {
+            if (Callable.class.equals(type) || "java.util.function.Supplier".equals(type.getName())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -923,8 +1336,12 @@ final class ProjectionInvocationHandler implements InvocationHandler, Serializab
         if (returnType.isArray()) {
             return method.getReturnType().getComponentType();
         }
+        final Class<?> primitiveStreamComponentType = ReflectionHelper.getPrimitiveStreamComponentType(returnType);
+        if (primitiveStreamComponentType != null) {
+            return primitiveStreamComponentType;
+        }
 
-        if (!(List.class.equals(returnType) || (Map.class.equals(returnType)) || XBAutoMap.class.isAssignableFrom(returnType) || XBAutoList.class.equals(returnType) || XBAutoValue.class.equals(returnType) || ReflectionHelper.isStreamClass(returnType))) {
+        if (!(List.class.equals(returnType) || Iterable.class.equals(returnType) || Iterator.class.equals(returnType) || (Map.class.equals(returnType)) || XBAutoMap.class.isAssignableFrom(returnType) || XBAutoList.class.equals(returnType) || XBAutoValue.class.equals(returnType) || ReflectionHelper.isStreamClass(returnType))) {
             return null;
         }
         final Type type = method.getGenericReturnType();
@@ -15,10 +15,10 @@
  */
 package org.xmlbeam;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -26,18 +26,22 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.net.URISyntaxException;
 import java.text.Format;
 import java.text.MessageFormat;
@@ -52,6 +56,8 @@ import javax.xml.xpath.XPathFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xmlbeam.ProjectionInvocationHandler.ProjectionModel;
 import org.xmlbeam.annotation.XBAuto;
 import org.xmlbeam.annotation.XBDelete;
 import org.xmlbeam.annotation.XBDocURL;
@@ -84,6 +90,7 @@ import org.xmlbeam.types.XBAutoMap;
 import org.xmlbeam.util.IOHelper;
 import org.xmlbeam.util.intern.DOMHelper;
 import org.xmlbeam.util.intern.DocScope;
+import org.xmlbeam.util.intern.LRUCache;
 import org.xmlbeam.util.intern.ReflectionHelper;
 import org.xmlbeam.util.intern.Scope;
 
@@ -149,6 +156,12 @@ public class XBProjector implements Serializable, ProjectionFactory {
 
     private final Set<Flags> flags;
 
+    /**
+     * Locking of projection invocations resolved from the flags. At most one of them is true.
+     */
+    private final boolean readWriteLockOnDocuments;
+    private final boolean synchronizeOnDocuments;
+
     /**
      * A variation of the builder pattern. All methods to configure the projector are hidden in this
      * builder class.
@@ -190,6 +203,7 @@ public class XBProjector implements Serializable, ProjectionFactory {
         @Override
         public ConfigBuilder setTypeConverter(final TypeConverter converter) {
             XBProjector.this.typeConverter = converter;
+            projectionModels.clear();
             return this;
         }
 
@@ -317,6 +331,7 @@ public class XBProjector implements Serializable, ProjectionFactory {
                 map.put(type, mixinImplementation);
             }
             mixins.put(projectionInterface, map);
+            projectionModels.remove(projectionInterface);
             return XBProjector.this;
 
         }
@@ -342,6 +357,7 @@ public class XBProjector implements Serializable, ProjectionFactory {
             if (!mixins.containsKey(projectionInterface)) {
                 return null;
             }
+            projectionModels.remove(projectionInterface);
             return (M) mixins.get(projectionInterface).remove(mixinInterface);
         }
     }
@@ -474,31 +490,66 @@ public class XBProjector implements Serializable, ProjectionFactory {
     @SuppressWarnings("unchecked")
     @Scope(DocScope.IO)
     public <T> T projectDOMNode(final Node documentOrElement, final Class<T> projectionInterface) {
-        ensureIsValidProjectionInterface(projectionInterface);
+        final ProjectionModel model = getProjectionModel(projectionInterface);
 
         if (documentOrElement == null) {
             throw new IllegalArgumentException("Parameter node must not be null");
         }
 
-        final Map<Class<?>, Object> mixinsForProjection = mixins.containsKey(projectionInterface) ? Collections.unmodifiableMap(mixins.get(projectionInterface)) : Collections.<Class<?>, Object> emptyMap();
-        final ProjectionInvocationHandler projectionInvocationHandler = new ProjectionInvocationHandler(XBProjector.this, documentOrElement, projectionInterface, mixinsForProjection, flags.contains(Flags.TO_STRING_RENDERS_XML), flags.contains(Flags.ABSENT_IS_EMPTY));
-        final Set<Class<?>> interfaces = new HashSet<Class<?>>();
-        interfaces.add(projectionInterface);
-        interfaces.add(DOMAccess.class);
-        interfaces.add(Serializable.class);
-        if (flags.contains(Flags.SYNCHRONIZE_ON_DOCUMENTS)) {
-            final Document document = DOMHelper.getOwnerDocumentFor(documentOrElement);
-            InvocationHandler synchronizedInvocationHandler = new InvocationHandler() {
-                @Override
-                public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-                    synchronized (document) {
-                        return projectionInvocationHandler.invoke(proxy, method, args);
-                    }
-                }
-            };
-            return ((T) Proxy.newProxyInstance(projectionInterface.getClassLoader(), interfaces.toArray(new Class<?>[interfaces.size()]), synchronizedInvocationHandler));
+        final ProjectionInvocationHandler projectionInvocationHandler = new ProjectionInvocationHandler(documentOrElement, model, synchronizeOnDocuments, readWriteLockOnDocuments);
+        return (T) model.newProxyInstance(projectionInvocationHandler);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    @Scope(DocScope.IO)
+    public <T> List<T> projectDOMNodes(final NodeList nodes, final Class<T> projectionInterface) {
+        final ProjectionModel model = getProjectionModel(projectionInterface);
+
+        if (nodes == null) {
+            throw new IllegalArgumentException("Parameter nodes must not be null");
+        }
+
+        final int length = nodes.getLength();
+        final List<T> projections = new ArrayList<T>(length);
+        // Node sets usually belong to one document, so the locks are looked up once.
+        Document lastDocument = null;
+        ReadWriteLock readWriteLock = null;
+        for (int i = 0; i < length; ++i) {
+            final Node node = nodes.item(i);
+            final Document document = (synchronizeOnDocuments || readWriteLockOnDocuments) ? DOMHelper.getOwnerDocumentFor(node) : null;
+            if (readWriteLockOnDocuments && (document != lastDocument)) {
+                readWriteLock = DOMHelper.getReadWriteLockFor(document);
+                lastDocument = document;
+            }
+            final ProjectionInvocationHandler projectionInvocationHandler = new ProjectionInvocationHandler(node, model, synchronizeOnDocuments ? document : null, readWriteLock);
+            projections.add((T) model.newProxyInstance(projectionInvocationHandler));
         }
-        return ((T) Proxy.newProxyInstance(projectionInterface.getClassLoader(), interfaces.toArray(new Class<?>[interfaces.size()]), projectionInvocationHandler));
+        return projections;
+    }
+
+    /**
+     * Validate and inspect a projection interface only once. Models depend on the registered mixins
+     * and the type converter and are dropped when those change.
+     *
+     * @param projectionInterface
+     * @return model for the given projection interface
+     */
+    private ProjectionModel getProjectionModel(final Class<?> projectionInterface) {
+        if (projectionInterface != null) {
+            final ProjectionModel model = projectionModels.get(projectionInterface);
+            if (model != null) {
+                return model;
+            }
+        }
+        ensureIsValidProjectionInterface(projectionInterface);
+        final Map<Class<?>, Object> mixinsForProjection = mixins.containsKey(projectionInterface) ? new HashMap<Class<?>, Object>(mixins.get(projectionInterface)) : Collections.<Class<?>, Object> emptyMap();
+        final ProjectionModel model = ProjectionModel.create(XBProjector.this, projectionInterface, mixinsForProjection, flags.contains(Flags.ABSENT_IS_EMPTY), flags.contains(Flags.READ_ONLY_CONCURRENT));
+        final ProjectionModel existing = projectionModels.putIfAbsent(projectionInterface, model);
+        return existing == null ? model : existing;
     }
 
     /**
@@ -557,7 +608,26 @@ public class XBProjector implements Serializable, ProjectionFactory {
     private TypeConverter typeConverter = new DefaultTypeConverter(Locale.getDefault(), TimeZone.getTimeZone("GMT"));
     private StringRenderer stringRenderer = (StringRenderer) typeConverter;
 
-    private final List<WeakReference<DOMChangeListener>> domChangeListeners = new LinkedList<WeakReference<DOMChangeListener>>();
+    /**
+     * Listeners are registered for the document they evaluate on, so a change notifies only the
+     * auto collections of the changed document.
+     */
+    private transient Map<Document, List<WeakReference<DOMChangeListener>>> domChangeListeners = new WeakHashMap<Document, List<WeakReference<DOMChangeListener>>>();
+
+    /**
+     * Maximum number of compiled expressions kept per projector.
+     */
+    private static final int INVOCATION_CONTEXT_CACHE_SIZE = 4096;
+
+    /**
+     * Compiled expressions shared by all projections created by this projector.
+     */
+    private transient LRUCache<Object, InvocationContext> invocationContextCache = new LRUCache<Object, InvocationContext>(INVOCATION_CONTEXT_CACHE_SIZE);
+
+    /**
+     * Inspected projection interfaces.
+     */
+    private transient ConcurrentMap<Class<?>, ProjectionModel> projectionModels = new ConcurrentHashMap<Class<?>, ProjectionModel>();
 
     /**
      * Global projector configuration options.
@@ -569,6 +639,18 @@ public class XBProjector implements Serializable, ProjectionFactory {
          * implementation is not thread safe.
          */
         SYNCHRONIZE_ON_DOCUMENTS,
+        /**
+         * Like SYNCHRONIZE_ON_DOCUMENTS, but with a read write lock per document. Reading
+         * projection methods share the lock, all other projection methods get exclusive access.
+         * Takes precedence over SYNCHRONIZE_ON_DOCUMENTS. XBAutoList and XBAutoMap views are not
+         * covered. Readers access the DOM concurrently, so the DOM implementation must allow
+         * concurrent reads. Xerces DOMs created with deferred node expansion (the JDK default)
+         * change on first access, so disable the feature
+         * "http://apache.org/xml/features/dom/defer-node-expansion" in
+         * {@link XMLFactoriesConfig#createDocumentBuilderFactory()} or touch the whole document
+         * before sharing it.
+         */
+        READ_WRITE_LOCK_ON_DOCUMENTS,
         /**
          * Let the projections toString() method render the projection target as XML. Be careful if
          * your documents get large. toString() might be used frequently by the IDE your debugging
@@ -582,7 +664,17 @@ public class XBProjector implements Serializable, ProjectionFactory {
         /**
          * If a node is not present, handle it like it is empty.
          */
-        ABSENT_IS_EMPTY
+        ABSENT_IS_EMPTY,
+        /**
+         * Projections are only read, but from many threads at once. Reads do not lock, even if
+         * SYNCHRONIZE_ON_DOCUMENTS is set. Projection methods changing the document throw an
+         * IllegalStateException. The DOM implementation must allow concurrent reads. Xerces DOMs
+         * created with deferred node expansion (the JDK default) change on first access, so
+         * disable the feature "http://apache.org/xml/features/dom/defer-node-expansion" in
+         * {@link XMLFactoriesConfig#createDocumentBuilderFactory()} or touch the whole document
+         * before sharing it.
+         */
+        READ_ONLY_CONCURRENT
     }
 
     /**
@@ -612,6 +704,8 @@ public class XBProjector implements Serializable, ProjectionFactory {
     public XBProjector(final XMLFactoriesConfig xMLFactoriesConfig, final Flags... optionalFlags) {
         this.xMLFactoriesConfig = xMLFactoriesConfig;
         this.flags = unfold(optionalFlags);
+        this.readWriteLockOnDocuments = flags.contains(Flags.READ_WRITE_LOCK_ON_DOCUMENTS) && !flags.contains(Flags.READ_ONLY_CONCURRENT);
+        this.synchronizeOnDocuments = flags.contains(Flags.SYNCHRONIZE_ON_DOCUMENTS) && !flags.contains(Flags.READ_ONLY_CONCURRENT) && !readWriteLockOnDocuments;
     }
 
     /**
@@ -791,21 +885,77 @@ public class XBProjector implements Serializable, ProjectionFactory {
         return Collections.unmodifiableSet(flags);
     }
 
-    void addDOMChangeListener(final DOMChangeListener listener) {
-        domChangeListeners.add(new WeakReference<DOMChangeListener>(listener));
+    /**
+     * @return cache for invocation contexts that do not depend on method parameters.
+     */
+    LRUCache<Object, InvocationContext> getInvocationContextCache() {
+        return invocationContextCache;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        invocationContextCache = new LRUCache<Object, InvocationContext>(INVOCATION_CONTEXT_CACHE_SIZE);
+        projectionModels = new ConcurrentHashMap<Class<?>, ProjectionModel>();
+        domChangeListeners = new WeakHashMap<Document, List<WeakReference<DOMChangeListener>>>();
+    }
+
+    /**
+     * @param node
+     *            node the listener evaluates on
+     * @param listener
+     */
+    void addDOMChangeListener(final Node node, final DOMChangeListener listener) {
+        final Document document = DOMHelper.getOwnerDocumentFor(node);
+        synchronized (domChangeListeners) {
+            List<WeakReference<DOMChangeListener>> listeners = domChangeListeners.get(document);
+            if (listeners == null) {
+                listeners = new LinkedList<WeakReference<DOMChangeListener>>();
+                domChangeListeners.put(document, listeners);
+            }
+            listeners.add(new WeakReference<DOMChangeListener>(listener));
+        }
     }
 
     /**
+     * Projections, auto maps and the namespace mapping cache what they read from a document until it
+     * is changed by a projection, an auto map, an auto list or an auto value. Call this method after
+     * changing the DOM directly, e.g. via {@link DOMAccess#getDOMNode()}, so these caches are
+     * rebuilt on next access.
      *
+     * @param node
+     *            the changed node or any other node of its document
      */
-    void notifyDOMChangeListeners() {
-        for (ListIterator<WeakReference<DOMChangeListener>> i = domChangeListeners.listIterator(); i.hasNext();) {
-            DOMChangeListener listener = i.next().get();
-            if (listener == null) {
-                i.remove();
-                continue;
+    public void notifyDOMChanged(final Node node) {
+        final Document document = DOMHelper.getOwnerDocumentFor(node);
+        if (document != null) {
+            notifyDOMChangeListeners(document);
+        }
+    }
+
+    /**
+     * Notify the listeners registered for the given document.
+     *
+     * @param document
+     *            changed document
+     */
+    void notifyDOMChangeListeners(final Document document) {
+        DOMHelper.markModified(document);
+        synchronized (domChangeListeners) {
+            final List<WeakReference<DOMChangeListener>> listeners = domChangeListeners.get(document);
+            if (listeners == null) {
+                return;
+            }
+            for (ListIterator<WeakReference<DOMChangeListener>> i = listeners.listIterator(); i.hasNext();) {
+                DOMChangeListener listener = i.next().get();
+                if (listener == null) {
+                    i.remove();
+                    continue;
+                }
+                listener.domChanged();
+            }
+            if (listeners.isEmpty()) {
+                domChangeListeners.remove(document);
             }
-            listener.domChanged();
         }
     }
 
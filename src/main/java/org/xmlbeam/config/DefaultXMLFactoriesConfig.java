@@ -16,10 +16,15 @@
 package org.xmlbeam.config;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
@@ -109,8 +114,88 @@ public class DefaultXMLFactoriesConfig implements XMLFactoriesConfig {
             "http://xml.org/sax/features/external-parameter-entities#false", //
             "http://apache.org/xml/features/nonvalidating/load-external-dtd#false" };
 
+    /**
+     * Namespace context mapping the prefixes found in the document, falling back to the user
+     * defined mapping. Instances are immutable and comparable by value, so compiled expressions can
+     * be cached per namespace context.
+     */
+    private static final class HedonisticNamespaceContext implements NamespaceContext {
+        private final Map<String, String> nameSpaceMapping;
+        private final Map<String, String> userDefinedMapping;
+        private final Map<String, String> prefixByURI = new HashMap<String, String>();
+        private final int hashCode;
+        /**
+         * Modification count of the scanned document, not part of equality.
+         */
+        private final long modificationCount;
+
+        HedonisticNamespaceContext(final Map<String, String> nameSpaceMapping, final Map<String, String> userDefinedMapping, final long modificationCount) {
+            this.nameSpaceMapping = nameSpaceMapping;
+            this.modificationCount = modificationCount;
+            this.userDefinedMapping = userDefinedMapping;
+            // Prefixes found in the document win over user defined ones.
+            for (Entry<String, String> e : userDefinedMapping.entrySet()) {
+                prefixByURI.put(e.getValue(), e.getKey());
+            }
+            for (Entry<String, String> e : nameSpaceMapping.entrySet()) {
+                prefixByURI.put(e.getValue(), e.getKey());
+            }
+            this.hashCode = (31 * nameSpaceMapping.hashCode()) + userDefinedMapping.hashCode();
+        }
+
+        @Override
+        public String getNamespaceURI(final String prefix) {
+            if (prefix == null) {
+                throw new IllegalArgumentException("null not allowed as prefix");
+            }
+            if (nameSpaceMapping.containsKey(prefix)) {
+                return nameSpaceMapping.get(prefix);
+            }
+            if (userDefinedMapping.containsKey(prefix)) {
+                return userDefinedMapping.get(prefix);
+            }
+            // Default is a global unique string uri to prevent xpath expression exeptions on
+            // nonexisting ns.
+            return NON_EXISTING_URL;
+        }
+
+        @Override
+        public String getPrefix(final String uri) {
+            return prefixByURI.get(uri);
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(final String val) {
+            return new UnionIterator<String>(nameSpaceMapping.keySet().iterator(), userDefinedMapping.keySet().iterator());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof HedonisticNamespaceContext)) {
+                return false;
+            }
+            final HedonisticNamespaceContext other = (HedonisticNamespaceContext) obj;
+            return (hashCode == other.hashCode) && nameSpaceMapping.equals(other.nameSpaceMapping) && userDefinedMapping.equals(other.userDefinedMapping);
+        }
+    }
+
     private final Map<String, String> USER_DEFINED_MAPPING = new TreeMap<String, String>();
 
+    /**
+     * Scanning a document for namespace declarations means walking all elements, so the result is
+     * kept until the document is changed. Changes are detected by the modification count of the
+     * document.
+     */
+    private transient Map<Document, HedonisticNamespaceContext> namespaceContexts = Collections.synchronizedMap(new WeakHashMap<Document, HedonisticNamespaceContext>());
+
     private NamespacePhilosophy namespacePhilosophy = NamespacePhilosophy.HEDONISTIC;
     private boolean isPrettyPrinting = true;
     private boolean isOmitXMLDeclaration = true;
@@ -162,22 +247,31 @@ public class DefaultXMLFactoriesConfig implements XMLFactoriesConfig {
     @Override
     public Transformer createTransformer(final Document... document) {
         try {
-            Transformer transformer = createTransformerFactory().newTransformer();
-            if (isPrettyPrinting()) {
-
-                // Enable some pretty printing of the resulting xml.
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            }
-            if (isOmitXMLDeclaration()) {
-                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            }
-            return transformer;
+            return applyOutputProperties(createTransformerFactory().newTransformer());
         } catch (TransformerConfigurationException e) {
             throw new XBException("Error on creating transformer",e);
         }
     }
 
+    /**
+     * Apply the pretty printing and XML declaration options to a transformer.
+     *
+     * @param transformer
+     * @return the given transformer
+     */
+    protected Transformer applyOutputProperties(final Transformer transformer) {
+        if (isPrettyPrinting()) {
+
+            // Enable some pretty printing of the resulting xml.
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        }
+        if (isOmitXMLDeclaration()) {
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        }
+        return transformer;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -196,48 +290,34 @@ public class DefaultXMLFactoriesConfig implements XMLFactoriesConfig {
             return xPath;
         }
         // For hedonistic name space philosophy we aspire a reasonable name space mapping.
-        final Map<String, String> nameSpaceMapping = DOMHelper.getNamespaceMapping(document[0]);
-        final NamespaceContext ctx = new NamespaceContext() {
-            @Override
-            public String getNamespaceURI(final String prefix) {
-                if (prefix == null) {
-                    throw new IllegalArgumentException("null not allowed as prefix");
-                }
-                if (nameSpaceMapping.containsKey(prefix)) {
-                    return nameSpaceMapping.get(prefix);
-                }
-                if (USER_DEFINED_MAPPING.containsKey(prefix)) {
-                    return USER_DEFINED_MAPPING.get(prefix);
-                }
-                // Default is a global unique string uri to prevent xpath expression exeptions on
-                // nonexisting ns.
-                return NON_EXISTING_URL;
-            }
-
-            @Override
-            public String getPrefix(final String uri) {
-                for (Entry<String, String> e : nameSpaceMapping.entrySet()) {
-                    if (e.getValue().equals(uri)) {
-                        return e.getKey();
-                    }
-                }
-                for (Entry<String, String> e : USER_DEFINED_MAPPING.entrySet()) {
-                    if (e.getValue().equals(uri)) {
-                        return e.getKey();
-                    }
-                }
-                return null;
-            }
-
-            @Override
-            public Iterator<String> getPrefixes(final String val) {
-                return new UnionIterator<String>(nameSpaceMapping.keySet().iterator(), USER_DEFINED_MAPPING.keySet().iterator());
-            }
-        };
+        final long modificationCount = DOMHelper.getModificationCount(document[0]);
+        HedonisticNamespaceContext ctx = namespaceContexts.get(document[0]);
+        if ((ctx == null) || (ctx.modificationCount != modificationCount)) {
+            ctx = new HedonisticNamespaceContext(DOMHelper.getNamespaceMapping(document[0]), new TreeMap<String, String>(USER_DEFINED_MAPPING), modificationCount);
+            namespaceContexts.put(document[0], ctx);
+        }
         xPath.setNamespaceContext(ctx);
         return xPath;
     }
 
+    /**
+     * Namespace mappings are cached per document. Changes by projections, auto maps, auto lists and
+     * auto values are detected. Call this method after changing namespace declarations in the DOM
+     * directly. Other caches of the document are invalidated too, like
+     * {@link org.xmlbeam.XBProjector#notifyDOMChanged(org.w3c.dom.Node)} does.
+     *
+     * @param document
+     */
+    public void invalidateNamespaceMapping(final Document document) {
+        namespaceContexts.remove(document);
+        DOMHelper.markModified(document);
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        namespaceContexts = Collections.synchronizedMap(new WeakHashMap<Document, HedonisticNamespaceContext>());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -322,6 +402,7 @@ public class DefaultXMLFactoriesConfig implements XMLFactoriesConfig {
                     throw new IllegalArgumentException("The prefix '" + prefix + "' is bound to namespace '" + USER_DEFINED_MAPPING.get(prefix) + " already.");
                 }
                 USER_DEFINED_MAPPING.put(prefix, uri);
+                namespaceContexts.clear();
                 return this;
             }
 
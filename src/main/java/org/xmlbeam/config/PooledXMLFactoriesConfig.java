@@ -0,0 +1,155 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.config;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.Transformer;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.xmlbeam.XBProjector;
+
+/**
+ * Configuration for {@link XBProjector} that avoids the factory lookups of
+ * {@link DefaultXMLFactoriesConfig}. Document builders, XPath factories and transformers are
+ * created once per thread and reused after a reset. Use it by passing an instance to the projector
+ * constructor: <code>new XBProjector(new PooledXMLFactoriesConfig())</code>.
+ * <p>
+ * A pooled document builder or transformer must not be used after another one was requested on
+ * the same thread, because it is the same instance. Streamed projections keep their document
+ * builder until the stream is consumed, so they create their own builder from
+ * {@link #createDocumentBuilderFactory()}.
+ *
+ * @author sven
+ */
+@SuppressWarnings("serial")
+public class PooledXMLFactoriesConfig extends DefaultXMLFactoriesConfig {
+
+    /**
+     * Pooled object types.
+     */
+    public enum Pool {
+        /**
+         * DocumentBuilder pool.
+         */
+        DOCUMENT_BUILDER,
+        /**
+         * XPathFactory pool.
+         */
+        XPATH_FACTORY,
+        /**
+         * Transformer pool.
+         */
+        TRANSFORMER
+    }
+
+    private transient volatile ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+    private transient ThreadLocal<XPathFactory> xPathFactories = new ThreadLocal<XPathFactory>();
+    private transient ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>();
+    private transient AtomicLongArray hits = new AtomicLongArray(Pool.values().length);
+    private transient AtomicLongArray misses = new AtomicLongArray(Pool.values().length);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DocumentBuilder createDocumentBuilder() {
+        DocumentBuilder documentBuilder = documentBuilders.get();
+        if (documentBuilder == null) {
+            misses.incrementAndGet(Pool.DOCUMENT_BUILDER.ordinal());
+            documentBuilder = super.createDocumentBuilder();
+            documentBuilders.set(documentBuilder);
+            return documentBuilder;
+        }
+        hits.incrementAndGet(Pool.DOCUMENT_BUILDER.ordinal());
+        documentBuilder.reset();
+        return documentBuilder;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XPathFactory createXPathFactory() {
+        XPathFactory xPathFactory = xPathFactories.get();
+        if (xPathFactory == null) {
+            misses.incrementAndGet(Pool.XPATH_FACTORY.ordinal());
+            xPathFactory = super.createXPathFactory();
+            xPathFactories.set(xPathFactory);
+            return xPathFactory;
+        }
+        hits.incrementAndGet(Pool.XPATH_FACTORY.ordinal());
+        return xPathFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Transformer createTransformer(final Document... document) {
+        Transformer transformer = transformers.get();
+        if (transformer == null) {
+            misses.incrementAndGet(Pool.TRANSFORMER.ordinal());
+            transformer = super.createTransformer(document);
+            transformers.set(transformer);
+            return transformer;
+        }
+        hits.incrementAndGet(Pool.TRANSFORMER.ordinal());
+        transformer.reset();
+        return applyOutputProperties(transformer);
+    }
+
+    /**
+     * {@inheritDoc} Pooled document builders are dropped.
+     */
+    @Override
+    public XMLFactoriesConfig setNamespacePhilosophy(final NamespacePhilosophy namespacePhilosophy) {
+        super.setNamespacePhilosophy(namespacePhilosophy);
+        // Other threads may still hold builders with the old setting, so start a new pool.
+        documentBuilders = new ThreadLocal<DocumentBuilder>();
+        return this;
+    }
+
+    /**
+     * @param pool
+     * @return number of requests served by a pooled instance.
+     */
+    public long getHits(final Pool pool) {
+        return hits.get(pool.ordinal());
+    }
+
+    /**
+     * @param pool
+     * @return number of requests that needed a new instance.
+     */
+    public long getMisses(final Pool pool) {
+        return misses.get(pool.ordinal());
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        documentBuilders = new ThreadLocal<DocumentBuilder>();
+        xPathFactories = new ThreadLocal<XPathFactory>();
+        transformers = new ThreadLocal<Transformer>();
+        hits = new AtomicLongArray(Pool.values().length);
+        misses = new AtomicLongArray(Pool.values().length);
+    }
+}
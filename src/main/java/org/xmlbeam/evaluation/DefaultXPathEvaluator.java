@@ -18,13 +18,16 @@
  */
 package org.xmlbeam.evaluation;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import java.awt.geom.IllegalPathStateException;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 
 import javax.xml.xpath.XPath;
@@ -41,10 +44,14 @@ import org.xmlbeam.XBProjector.Flags;
 import org.xmlbeam.exceptions.XBException;
 import org.xmlbeam.exceptions.XBIOException;
 import org.xmlbeam.exceptions.XBPathException;
+import org.xmlbeam.types.CharSequenceTypeConverter;
+import org.xmlbeam.types.DefaultTypeConverter;
 import org.xmlbeam.types.TypeConverter;
 import org.xmlbeam.types.XBAutoMap;
+import org.xmlbeam.util.intern.CharSequenceParser;
 import org.xmlbeam.util.intern.DOMHelper;
 import org.xmlbeam.util.intern.ReflectionHelper;
+import org.xmlbeam.util.intern.SimplePathExpression;
 import org.xmlbeam.util.intern.duplex.DuplexExpression;
 import org.xmlbeam.util.intern.duplex.DuplexXPathParser;
 
@@ -138,7 +145,7 @@ public final class DefaultXPathEvaluator implements XPathEvaluator {
         try {
             final Document document = documentProvider.resolve(returnType, callerClass);
 
-            final XPathExpression expression = projector.config().createXPath(document).compile(duplexExpression.getExpressionAsStringWithoutFormatPatterns());
+            final XPathExpression expression = SimplePathExpression.compile(projector.config().createXPath(document), duplexExpression.getExpressionAsStringWithoutFormatPatterns());
 
             if (projector.config().getTypeConverter().isConvertable(returnType)) {
                 String data;
@@ -196,9 +203,18 @@ public final class DefaultXPathEvaluator implements XPathEvaluator {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T[] asArrayOf(final Class<T> componentType) {
+        validateEvaluationType(componentType);
         Class<?> callerClass = ReflectionHelper.getDirectCallerClass();
-        List<T> list = evaluateMultiValues(componentType, callerClass);
-        return list.toArray((T[]) java.lang.reflect.Array.newInstance(componentType, list.size()));
+        try {
+            Document document = documentProvider.resolve(componentType, callerClass);
+            XPathExpression expression = SimplePathExpression.compile(projector.config().createXPath(document), duplexExpression.getExpressionAsStringWithoutFormatPatterns());
+            InvocationContext invocationContext = new InvocationContext(null, null, expression, duplexExpression, null, componentType, projector);
+            return (T[]) evaluateAsArray(expression, document, null, invocationContext);
+        } catch (XPathExpressionException e) {
+            throw new XBPathException(e,duplexExpression.getExpressionAsStringWithoutFormatPatterns());
+        } catch (IOException e) {
+            throw new XBIOException(e);
+        }
     }
 
     /**
@@ -220,7 +236,7 @@ public final class DefaultXPathEvaluator implements XPathEvaluator {
         validateEvaluationType(componentType);
         try {
             Document document = documentProvider.resolve(componentType, callerClass);
-            XPathExpression expression = projector.config().createXPath(document).compile(duplexExpression.getExpressionAsStringWithoutFormatPatterns());
+            XPathExpression expression = SimplePathExpression.compile(projector.config().createXPath(document), duplexExpression.getExpressionAsStringWithoutFormatPatterns());
             InvocationContext invocationContext = new InvocationContext(null, null, expression, duplexExpression, null, componentType, projector);
             return (List<T>) evaluateAsList(expression, document, null, invocationContext);
         } catch (XPathExpressionException e) {
@@ -241,35 +257,230 @@ public final class DefaultXPathEvaluator implements XPathEvaluator {
      * @throws XPathExpressionException
      */
     public static List<?> evaluateAsList(final XPathExpression expression, final Node node, final Method method, final InvocationContext invocationContext) throws XPathExpressionException {
-        //assert targetComponentType != null;
-        final Class<?> targetComponentType = invocationContext.getTargetComponentType();
+        final boolean isConvertable = isValidListComponentType(method, invocationContext);
         final NodeList nodes = (NodeList) expression.evaluate(node, XPathConstants.NODESET);
-        final List<Object> linkedList = new LinkedList<Object>();
+        if (isSubProjectionComponentType(invocationContext, isConvertable)) {
+            return invocationContext.getProjector().projectDOMNodes(nodes, invocationContext.getTargetComponentType());
+        }
+        final int length = nodes.getLength();
+        final List<Object> list = new ArrayList<Object>(length);
+        for (int i = 0; i < length; ++i) {
+            list.add(convertListItem(invocationContext, nodes.item(i), isConvertable));
+        }
+        return list;
+    }
 
-        final TypeConverter typeConverter = invocationContext.getProjector().config().getTypeConverter();
-        if (typeConverter.isConvertable(targetComponentType)) {
-            for (int i = 0; i < nodes.getLength(); ++i) {
-                linkedList.add(typeConverter.convertTo(targetComponentType, nodes.item(i).getTextContent(), invocationContext.getExpressionFormatPattern()));
-            }
-            return linkedList;
+    /**
+     * Perform an XPath evaluation on an invocation context, but convert the resulting nodes not
+     * before they are accessed. Streams or loops that stop early do not pay for the whole node set.
+     * The returned list is unmodifiable and converts a node again on each access. It reads the DOM
+     * without any document lock and sees later changes of the selected nodes, so it must not be
+     * used for projections synchronizing on their document.
+     *
+     * @param expression
+     * @param node
+     * @param method
+     * @param invocationContext
+     * @return a list view of evaluation results
+     * @throws XPathExpressionException
+     */
+    public static List<?> evaluateAsLazyList(final XPathExpression expression, final Node node, final Method method, final InvocationContext invocationContext) throws XPathExpressionException {
+        final boolean isConvertable = isValidListComponentType(method, invocationContext);
+        final NodeList nodes = (NodeList) expression.evaluate(node, XPathConstants.NODESET);
+        return new LazyNodeList(nodes, invocationContext, isConvertable);
+    }
+
+    private static final class LazyNodeList extends AbstractList<Object> implements RandomAccess {
+        private final NodeList nodes;
+        private final InvocationContext invocationContext;
+        private final boolean isConvertable;
+        private final int size;
+
+        LazyNodeList(final NodeList nodes, final InvocationContext invocationContext, final boolean isConvertable) {
+            this.nodes = nodes;
+            this.invocationContext = invocationContext;
+            this.isConvertable = isConvertable;
+            this.size = nodes.getLength();
         }
-        if (Node.class.equals(targetComponentType)) {
-            for (int i = 0; i < nodes.getLength(); ++i) {
-                linkedList.add(nodes.item(i));
+
+        @Override
+        public Object get(final int index) {
+            if ((index < 0) || (index >= size)) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
             }
-            return linkedList;
+            return convertListItem(invocationContext, nodes.item(index), isConvertable);
         }
-        if (targetComponentType.isInterface()) {
-            for (int i = 0; i < nodes.getLength(); ++i) {
-                Object subprojection = invocationContext.getProjector().projectDOMNode(nodes.item(i), targetComponentType);
-                linkedList.add(subprojection);
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Perform an XPath evaluation on an invocation context and write the results directly into an
+     * array of the target component type.
+     *
+     * @param expression
+     * @param node
+     * @param method
+     * @param invocationContext
+     * @return an array of evaluation results
+     * @throws XPathExpressionException
+     */
+    public static Object[] evaluateAsArray(final XPathExpression expression, final Node node, final Method method, final InvocationContext invocationContext) throws XPathExpressionException {
+        final boolean isConvertable = isValidListComponentType(method, invocationContext);
+        final NodeList nodes = (NodeList) expression.evaluate(node, XPathConstants.NODESET);
+        final int length = nodes.getLength();
+        final Object[] array = (Object[]) java.lang.reflect.Array.newInstance(invocationContext.getTargetComponentType(), length);
+        if (isSubProjectionComponentType(invocationContext, isConvertable)) {
+            return invocationContext.getProjector().projectDOMNodes(nodes, invocationContext.getTargetComponentType()).toArray(array);
+        }
+        for (int i = 0; i < length; ++i) {
+            array[i] = convertListItem(invocationContext, nodes.item(i), isConvertable);
+        }
+        return array;
+    }
+
+    /**
+     * Evaluate the XPath as an array of a primitive component type. If the type converter uses its
+     * built in conversion, the node texts are parsed directly into the array without boxing. Items
+     * are converted like list items, see {@link #convertItemText(InvocationContext, Class, Node)}.
+     *
+     * @param expression
+     * @param node
+     * @param invocationContext
+     * @return a primitive array, e.g. int[]
+     * @throws XPathExpressionException
+     */
+    public static Object evaluateAsPrimitiveArray(final XPathExpression expression, final Node node, final InvocationContext invocationContext) throws XPathExpressionException {
+        final Class<?> componentType = invocationContext.getTargetComponentType();
+        assert componentType.isPrimitive();
+        final NodeList nodes = (NodeList) expression.evaluate(node, XPathConstants.NODESET);
+        final int length = nodes.getLength();
+        final TypeConverter typeConverter = invocationContext.getProjector().config().getTypeConverter();
+        if ((invocationContext.getExpressionFormatPattern() == null) && isDefaultConversion(typeConverter, componentType)) {
+            if (Integer.TYPE.equals(componentType)) {
+                final int[] array = new int[length];
+                for (int i = 0; i < length; ++i) {
+                    final CharSequence text = getItemText(nodes.item(i));
+                    array[i] = isMissingNumber(text) ? 0 : (int) CharSequenceParser.parseLong(text, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                }
+                return array;
+            }
+            if (Long.TYPE.equals(componentType)) {
+                final long[] array = new long[length];
+                for (int i = 0; i < length; ++i) {
+                    final CharSequence text = getItemText(nodes.item(i));
+                    array[i] = isMissingNumber(text) ? 0L : CharSequenceParser.parseLong(text, Long.MIN_VALUE, Long.MAX_VALUE);
+                }
+                return array;
             }
-            return linkedList;
+            if (Double.TYPE.equals(componentType)) {
+                final double[] array = new double[length];
+                for (int i = 0; i < length; ++i) {
+                    final CharSequence text = getItemText(nodes.item(i));
+                    array[i] = isMissingNumber(text) ? 0D : Double.parseDouble(text.toString());
+                }
+                return array;
+            }
+        }
+        if (!typeConverter.isConvertable(componentType)) {
+            throw new IllegalArgumentException("Array component type " + componentType + " is not supported by the current type converter:" + typeConverter);
+        }
+        final Object array = Array.newInstance(componentType, length);
+        for (int i = 0; i < length; ++i) {
+            Array.set(array, i, convertItemText(invocationContext, componentType, nodes.item(i)));
+        }
+        return array;
+    }
+
+    /**
+     * Convert the text of a list or array item. Elements provide their direct text only, like
+     * projected lists do. A blank element is a missing value for the built in number conversions
+     * and becomes the default value of the type, e.g. 0 for int and null for Integer. Other
+     * conversions get the text unchanged.
+     *
+     * @param invocationContext
+     * @param targetType
+     * @param item
+     * @return converted item text
+     */
+    private static Object convertItemText(final InvocationContext invocationContext, final Class<?> targetType, final Node item) {
+        final CharSequence text = getItemText(item);
+        if (isMissingNumber(text) && isNumberType(targetType) && isDefaultConversion(invocationContext.getProjector().config().getTypeConverter(), targetType)) {
+            return convertText(invocationContext, targetType, null);
+        }
+        return convertText(invocationContext, targetType, text);
+    }
+
+    private static CharSequence getItemText(final Node item) {
+        return item.getNodeType() == Node.ELEMENT_NODE ? DOMHelper.directText(item) : item.getTextContent();
+    }
+
+    private static boolean isMissingNumber(final CharSequence text) {
+        return (text == null) || CharSequenceParser.isBlank(text);
+    }
+
+    private static boolean isNumberType(final Class<?> type) {
+        return Number.class.isAssignableFrom(type) || (type.isPrimitive() && !Boolean.TYPE.equals(type) && !Character.TYPE.equals(type));
+    }
+
+    private static boolean isDefaultConversion(final TypeConverter typeConverter, final Class<?> type) {
+        return (typeConverter instanceof DefaultTypeConverter) && ((DefaultTypeConverter) typeConverter).isDefaultConversion(type);
+    }
+
+    /**
+     * @return true if the component type is convertable, false if nodes or sub projections are
+     *         returned.
+     */
+    private static boolean isValidListComponentType(final Method method, final InvocationContext invocationContext) {
+        //assert targetComponentType != null;
+        final Class<?> targetComponentType = invocationContext.getTargetComponentType();
+        if (invocationContext.getProjector().config().getTypeConverter().isConvertable(targetComponentType)) {
+            return true;
+        }
+        if (Node.class.equals(targetComponentType) || targetComponentType.isInterface()) {
+            return false;
         }
         throw new IllegalArgumentException("Return type " + targetComponentType + " is not valid for list or array component type returning from method " + method + " using the current type converter:" + invocationContext.getProjector().config().getTypeConverter()
                 + ". Please change the return type to a sub projection or add a conversion to the type converter.");
     }
 
+    private static boolean isSubProjectionComponentType(final InvocationContext invocationContext, final boolean isConvertable) {
+        return !isConvertable && !Node.class.equals(invocationContext.getTargetComponentType());
+    }
+
+    private static Object convertListItem(final InvocationContext invocationContext, final Node item, final boolean isConvertable) {
+        final Class<?> targetComponentType = invocationContext.getTargetComponentType();
+        if (isConvertable) {
+            return convertItemText(invocationContext, targetComponentType, item);
+        }
+        if (Node.class.equals(targetComponentType)) {
+            return item;
+        }
+        return invocationContext.getProjector().projectDOMNode(item, targetComponentType);
+    }
+
+    /**
+     * Convert text with the configured type converter and the format pattern of the invocation
+     * context. Converters implementing {@link CharSequenceTypeConverter} get the text without
+     * copying it to a String.
+     *
+     * @param invocationContext
+     * @param targetType
+     * @param data
+     * @return converted value
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T convertText(final InvocationContext invocationContext, final Class<?> targetType, final CharSequence data) {
+        final TypeConverter typeConverter = invocationContext.getProjector().config().getTypeConverter();
+        if (typeConverter instanceof CharSequenceTypeConverter) {
+            return (T) ((CharSequenceTypeConverter) typeConverter).convertText(targetType, data, invocationContext.getExpressionFormatPattern());
+        }
+        return (T) typeConverter.convertTo(targetType, data == null ? null : data.toString(), invocationContext.getExpressionFormatPattern());
+    }
+
     /**
      * @param invocationContext
      *            invocation context
@@ -281,7 +492,7 @@ public final class DefaultXPathEvaluator implements XPathEvaluator {
     public static <E> E convertToComponentType(final InvocationContext invocationContext, final Node item, final Class<?> targetComponentType) {
         TypeConverter typeConverter = invocationContext.getProjector().config().getTypeConverter();
         if (typeConverter.isConvertable(invocationContext.getTargetComponentType())) {
-            return (E) typeConverter.convertTo(targetComponentType, item != null ? DOMHelper.directTextContent(item) : null, invocationContext.getExpressionFormatPattern());
+            return (E) (item != null ? convertItemText(invocationContext, targetComponentType, item) : convertText(invocationContext, targetComponentType, null));
         }
         if (Node.class.equals(targetComponentType)) {
             return (E) item;
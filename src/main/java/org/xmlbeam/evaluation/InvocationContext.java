@@ -103,7 +103,8 @@ public class InvocationContext {
 
     /**
      * A context may be reused even when method parameters change. But the change needs to be
-     * reflected to XPath variable bindings.
+     * reflected to XPath variable bindings. Parameters are bound to the calling thread, so one
+     * context may be used by concurrent invocations.
      * 
      * @param args
      */
@@ -113,6 +114,16 @@ public class InvocationContext {
         }
     }
 
+    /**
+     * Release the parameters bound by {@link #updateMethodArgs(Object[])}. Must be called when the
+     * invocation is finished, otherwise the calling thread keeps them reachable.
+     */
+    public void clearMethodArgs() {
+        if (resolver != null) {
+            resolver.clearArgs();
+        }
+    }
+
     /**
      * @return target type of evaluation
      */
@@ -0,0 +1,61 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.io;
+
+import java.util.Iterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Projections of the elements of a stream, parsed on demand. It can be iterated only once. The
+ * stream is closed when all elements were read or on errors. Close it to stop reading early.
+ *
+ * @author sven
+ * @param <T>
+ *            projection type
+ */
+public final class FragmentIterable<T> implements Iterable<T>, Closeable {
+
+    private final FragmentIterator<T> iterator;
+    private boolean iterated = false;
+
+    FragmentIterable(final FragmentIterator<T> iterator) {
+        this.iterator = iterator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<T> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("The stream can be read only once.");
+        }
+        iterated = true;
+        return iterator;
+    }
+
+    /**
+     * Stop reading and close the stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        iterator.close();
+    }
+}
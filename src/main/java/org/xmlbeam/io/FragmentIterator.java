@@ -0,0 +1,342 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.exceptions.XBDocumentParsingException;
+import org.xmlbeam.exceptions.XBException;
+
+/**
+ * Reads a stream with StAX and creates one projection for each element matching a simple
+ * absolute path. Only the matching element is turned into a DOM, so memory usage does not depend
+ * on the size of the stream. The reader and the input stream are closed when the last element was
+ * read, on errors, or by {@link #close()}. Entity references the reader does not replace are
+ * rejected, because there is no DTD to resolve them.
+ *
+ * @author sven
+ * @param <T>
+ *            projection type
+ */
+class FragmentIterator<T> implements Iterator<T>, Closeable {
+
+    private final XBProjector projector;
+    private final Class<T> projectionInterface;
+    private final String[] pathSteps;
+    private final InputStream is;
+    private final XMLStreamReader reader;
+    private final DocumentBuilder documentBuilder;
+    private final boolean namespaceAware;
+
+    /**
+     * Element names from the document root to the current element.
+     */
+    private final List<String> currentPath = new ArrayList<String>();
+
+    /**
+     * Namespace declarations of the elements in currentPath.
+     */
+    private final LinkedList<Map<String, String>> namespaceDeclarations = new LinkedList<Map<String, String>>();
+
+    private boolean atMatch = false;
+    private boolean finished = false;
+
+    FragmentIterator(final XBProjector projector, final InputStream is, final String systemID, final String elementPath, final Class<T> projectionInterface) {
+        this.projector = projector;
+        this.projectionInterface = projectionInterface;
+        this.pathSteps = parsePath(elementPath);
+        this.documentBuilder = createDocumentBuilder(projector);
+        this.namespaceAware = documentBuilder.isNamespaceAware();
+        this.is = is;
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+        try {
+            this.reader = systemID == null ? factory.createXMLStreamReader(is) : factory.createXMLStreamReader(systemID, is);
+        } catch (XMLStreamException e) {
+            closeStream();
+            throw new XBDocumentParsingException(e);
+        }
+    }
+
+    /**
+     * The builder is kept until the stream is consumed, possibly by another thread. So we do not
+     * take it from the config, which may hand out a per thread instance again.
+     */
+    private static DocumentBuilder createDocumentBuilder(final XBProjector projector) {
+        try {
+            return projector.config().createDocumentBuilderFactory().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new XBException("Error on creating document builder", e);
+        }
+    }
+
+    private static String[] parsePath(final String elementPath) {
+        if ((elementPath == null) || (!elementPath.matches("(/[^/\\[\\]@()*]+)+"))) {
+            throw new IllegalArgumentException("Path " + elementPath + " is not supported for streaming. Use an absolute path of element names like /feed/item");
+        }
+        return elementPath.substring(1).split("/");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (atMatch) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        boolean failed = true;
+        try {
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    currentPath.add(getQName());
+                    namespaceDeclarations.add(getNamespaceDeclarations());
+                    if (isMatch()) {
+                        atMatch = true;
+                        failed = false;
+                        return true;
+                    }
+                    continue;
+                }
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    currentPath.remove(currentPath.size() - 1);
+                    namespaceDeclarations.removeLast();
+                }
+            }
+            failed = false;
+            closeQuietly();
+            return false;
+        } catch (XMLStreamException e) {
+            throw new XBDocumentParsingException(e);
+        } finally {
+            if (failed) {
+                closeQuietly();
+            }
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        atMatch = false;
+        boolean failed = true;
+        try {
+            final Document document = documentBuilder.newDocument();
+            final Element fragment = createElement(document);
+            // Make namespaces declared on ancestors available in the fragment.
+            final Map<String, String> inScope = new LinkedHashMap<String, String>();
+            for (Map<String, String> declarations : namespaceDeclarations) {
+                inScope.putAll(declarations);
+            }
+            for (Entry<String, String> e : inScope.entrySet()) {
+                declareNamespace(fragment, e.getKey(), e.getValue());
+            }
+            document.appendChild(fragment);
+            readContent(document, fragment);
+            currentPath.remove(currentPath.size() - 1);
+            namespaceDeclarations.removeLast();
+            final T projection = projector.projectDOMNode(fragment, projectionInterface);
+            failed = false;
+            return projection;
+        } catch (XMLStreamException e) {
+            throw new XBDocumentParsingException(e);
+        } finally {
+            if (failed) {
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Stop reading. Closes the reader and the input stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        atMatch = false;
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            is.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Reading is over anyway.
+        }
+    }
+
+    private void closeStream() {
+        try {
+            is.close();
+        } catch (IOException e) {
+            // Creating the reader failed already.
+        }
+    }
+
+    /**
+     * Build the DOM for the current element until its end tag is reached.
+     */
+    private void readContent(final Document document, final Element fragment) throws XMLStreamException {
+        Node parent = fragment;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                final Element element = createElement(document);
+                for (Entry<String, String> e : getNamespaceDeclarations().entrySet()) {
+                    declareNamespace(element, e.getKey(), e.getValue());
+                }
+                parent.appendChild(element);
+                parent = element;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (parent == fragment) {
+                    return;
+                }
+                parent = parent.getParentNode();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                parent.appendChild(document.createTextNode(reader.getText()));
+                break;
+            case XMLStreamConstants.CDATA:
+                parent.appendChild(document.createCDATASection(reader.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                parent.appendChild(document.createComment(reader.getText()));
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                parent.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                throw new XBDocumentParsingException("Entity reference &" + reader.getLocalName() + "; in element " + fragment.getNodeName() + " can not be resolved while streaming.", null);
+            default:
+                break;
+            }
+        }
+        throw new XBDocumentParsingException("Unexpected end of stream in element " + fragment.getNodeName(), null);
+    }
+
+    private Element createElement(final Document document) {
+        final Element element = namespaceAware ? document.createElementNS(emptyToNull(reader.getNamespaceURI()), getQName()) : document.createElement(getQName());
+        for (int i = 0; i < reader.getAttributeCount(); ++i) {
+            final String prefix = reader.getAttributePrefix(i);
+            final String name = (prefix == null) || prefix.isEmpty() ? reader.getAttributeLocalName(i) : prefix + ":" + reader.getAttributeLocalName(i);
+            if (namespaceAware) {
+                element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)), name, reader.getAttributeValue(i));
+            } else {
+                element.setAttribute(name, reader.getAttributeValue(i));
+            }
+        }
+        return element;
+    }
+
+    private void declareNamespace(final Element element, final String prefix, final String uri) {
+        final String name = prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+        if (namespaceAware) {
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, uri);
+        } else {
+            element.setAttribute(name, uri);
+        }
+    }
+
+    private Map<String, String> getNamespaceDeclarations() {
+        final int count = reader.getNamespaceCount();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> declarations = new LinkedHashMap<String, String>();
+        for (int i = 0; i < count; ++i) {
+            final String prefix = reader.getNamespacePrefix(i);
+            declarations.put(prefix == null ? "" : prefix, reader.getNamespaceURI(i) == null ? "" : reader.getNamespaceURI(i));
+        }
+        return declarations;
+    }
+
+    private String getQName() {
+        final String prefix = reader.getPrefix();
+        return (prefix == null) || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+    }
+
+    /**
+     * Steps without prefix match on the local name, steps with prefix on the qualified name.
+     */
+    private boolean isMatch() {
+        if (currentPath.size() != pathSteps.length) {
+            return false;
+        }
+        for (int i = 0; i < pathSteps.length; ++i) {
+            final String name = currentPath.get(i);
+            final String step = pathSteps[i];
+            if (step.equals(name)) {
+                continue;
+            }
+            if ((step.indexOf(':') < 0) && name.endsWith(":" + step)) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static String emptyToNull(final String s) {
+        return (s == null) || s.isEmpty() ? null : s;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
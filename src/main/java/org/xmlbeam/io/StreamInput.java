@@ -65,6 +65,24 @@ public class StreamInput implements CanEvaluate {
         return projector.projectDOMNode(document, projectionInterface);
     }
 
+    /**
+     * Read the stream without building a DOM for the whole document. For each element matching the
+     * given path a small DOM is created and projected. Use this for documents that do not fit into
+     * memory. The result can be iterated only once. The stream is closed after the last element,
+     * on errors, or when the result is closed.
+     *
+     * @param elementPath
+     *            absolute path of element names like "/feed/item". Steps without prefix match
+     *            elements in any namespace.
+     * @param projectionInterface
+     *            A Java interface to project each element on.
+     * @return projections of the matching elements, parsed on demand.
+     */
+    @Scope(DocScope.IO)
+    public <T> FragmentIterable<T> readFragments(final String elementPath, final Class<T> projectionInterface) {
+        return new FragmentIterable<T>(new FragmentIterator<T>(projector, is, systemID, elementPath, projectionInterface));
+    }
+
     private Document readDocument() throws IOException {
         try {
             DocumentBuilder documentBuilder = projector.config().createDocumentBuilder();
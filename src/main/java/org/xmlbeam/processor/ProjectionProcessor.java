@@ -0,0 +1,228 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.processor;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import org.xmlbeam.annotation.XBAuto;
+import org.xmlbeam.annotation.XBDelete;
+import org.xmlbeam.annotation.XBDocURL;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.annotation.XBUpdate;
+import org.xmlbeam.annotation.XBValue;
+import org.xmlbeam.annotation.XBWrite;
+import org.xmlbeam.util.intern.duplex.DuplexXPathParser;
+import org.xmlbeam.util.intern.duplex.XBPathParsingException;
+
+/**
+ * Validates projection interfaces at compile time. Checks the rules the projector checks when an
+ * interface is used the first time and parses all XPath expressions, so mistakes are reported by
+ * the compiler instead of at the first projection. This is a checker only, the projector still
+ * validates each interface at runtime.
+ * <p>
+ * The processor is not registered as a service. Enable it with
+ * <code>javac -processor org.xmlbeam.processor.ProjectionProcessor</code>. If you resolve
+ * annotation values with an externalizer, pass <code>-Axmlbeam.validateXPath=false</code> to skip
+ * the XPath syntax check.
+ *
+ * @author sven
+ */
+public class ProjectionProcessor extends AbstractProcessor {
+
+    private static final String VALIDATE_XPATH_OPTION = "xmlbeam.validateXPath";
+
+    private final Set<String> visitedInterfaces = new HashSet<String>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        final Set<String> types = new HashSet<String>();
+        for (Class<?> a : new Class<?>[] { XBRead.class, XBWrite.class, XBUpdate.class, XBDelete.class, XBAuto.class }) {
+            types.add(a.getName());
+        }
+        return types;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(VALIDATE_XPATH_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                final Element type = element.getEnclosingElement();
+                if ((type == null) || (type.getKind() != ElementKind.INTERFACE)) {
+                    error(element, "Projection annotations are allowed on interface methods only.");
+                    continue;
+                }
+                validateInterface((TypeElement) type);
+            }
+        }
+        return false;
+    }
+
+    private void validateInterface(final TypeElement type) {
+        final String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+        if (!visitedInterfaces.add(name)) {
+            return;
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+                // Methods of java.lang.Object
+                continue;
+            }
+            validateMethod(method);
+        }
+    }
+
+    private boolean validateMethod(final ExecutableElement method) {
+        final XBRead read = method.getAnnotation(XBRead.class);
+        final XBWrite write = method.getAnnotation(XBWrite.class);
+        final XBUpdate update = method.getAnnotation(XBUpdate.class);
+        final XBDelete delete = method.getAnnotation(XBDelete.class);
+        final XBAuto auto = method.getAnnotation(XBAuto.class);
+        final boolean isExternal = method.getAnnotation(XBDocURL.class) != null;
+        final boolean isThrowsException = !method.getThrownTypes().isEmpty();
+        final boolean hasParameters = !method.getParameters().isEmpty();
+        boolean valid = true;
+        if (countNonNull(read, write, update, delete, auto) > 1) {
+            valid = error(method, "Method has to many annotations. Decide for one of @XBRead, @XBWrite, @XBUpdate, @XBDelete or @XBAuto.");
+        }
+        if (isExternal && ((write != null) || (update != null) || (delete != null))) {
+            valid = error(method, "Method was declared as writing projection but has a @XBDocURL annotation. Defining external projections is only possible when reading because there is no DOM attached.");
+        }
+        if (read != null) {
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                valid = error(method, "Method has @XBRead annotation, but has no return type.");
+            }
+            if (isRawType(method.getReturnType())) {
+                valid = error(method, "Method has @XBRead annotation, but has a raw return type.");
+            }
+            if (method.getThrownTypes().size() > 1) {
+                valid = error(method, "Method has @XBRead annotation, but declares to throw multiple exceptions. Which one should I throw?");
+            }
+            if (isOptional(method.getReturnType()) && isThrowsException) {
+                valid = error(method, "Method has an Optional<> return type, but declares to throw an exception. Exception will never be thrown because return value must not be null.");
+            }
+            valid &= validateXPath(method, read.value());
+        }
+        if (write != null) {
+            if (isThrowsException) {
+                valid = error(method, "Method declares to throw an exception but is not a reading projection method. When should this exception be thrown?");
+            }
+            if (!hasParameters) {
+                valid = error(method, "Method has @XBWrite annotation, but has no parameter.");
+            }
+            valid &= validateXPath(method, write.value());
+        }
+        if (update != null) {
+            if (!hasParameters) {
+                valid = error(method, "Method has @XBUpdate annotation, but has no parameter.");
+            }
+            valid &= validateXPath(method, update.value());
+        }
+        if (delete != null) {
+            valid &= validateXPath(method, delete.value());
+        }
+        if (auto != null) {
+            valid &= validateXPath(method, auto.value());
+        }
+        int valueCount = 0;
+        for (VariableElement parameter : method.getParameters()) {
+            if (isOptional(parameter.asType())) {
+                valid = error(method, "Method has java.util.Optional as a parameter type.");
+            }
+            if (parameter.getAnnotation(XBValue.class) == null) {
+                continue;
+            }
+            if ((write == null) && (update == null)) {
+                valid = error(method, "Method is not a writing projection method, but has an @XBValue annotation.");
+            }
+            if (++valueCount > 1) {
+                valid = error(method, "Method has multiple @XBValue annotations.");
+            }
+        }
+        return valid;
+    }
+
+    private boolean validateXPath(final ExecutableElement method, final String xpath) {
+        if ("false".equalsIgnoreCase(processingEnv.getOptions().get(VALIDATE_XPATH_OPTION))) {
+            return true;
+        }
+        if (xpath.indexOf('{') >= 0) {
+            // Preprocessor placeholders are replaced by method parameters at runtime.
+            return true;
+        }
+        try {
+            new DuplexXPathParser(Collections.<String, String> emptyMap()).compile(xpath);
+            return true;
+        } catch (XBPathParsingException e) {
+            return error(method, "Invalid XPath '" + xpath + "': " + e.getMessage());
+        }
+    }
+
+    private static boolean isRawType(final TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        final DeclaredType declaredType = (DeclaredType) type;
+        return declaredType.getTypeArguments().isEmpty() && !((TypeElement) declaredType.asElement()).getTypeParameters().isEmpty();
+    }
+
+    private static boolean isOptional(final TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        return "java.util.Optional".equals(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+    }
+
+    private boolean error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+        return false;
+    }
+
+    private static int countNonNull(final Object... objects) {
+        int count = 0;
+        for (Object o : objects) {
+            if (o != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.types;
+
+/**
+ * Type converter that converts text given as CharSequence. Implementations may parse values
+ * directly from the text without creating intermediate strings. Used instead of
+ * {@link TypeConverter#convertTo(Class, String, String...)} if the configured type converter
+ * implements this interface.
+ *
+ * @author sven
+ */
+public interface CharSequenceTypeConverter extends TypeConverter {
+
+    /**
+     * Convert text to the given target type. There is no parameter check. Caller <b>must</b>
+     * check by calling {@code isConvertable(...)} before.
+     *
+     * @param targetType
+     * @param data
+     *            text to convert, may be null.
+     * @param formatPattern
+     *            optional format pattern, may be null.
+     * @return a new instance of the target type.
+     */
+    <T> T convertText(Class<T> targetType, CharSequence data, String formatPattern);
+}
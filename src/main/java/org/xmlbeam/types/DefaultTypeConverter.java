@@ -15,30 +15,30 @@
  */
 package org.xmlbeam.types;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.text.DateFormat;
-import java.text.DateFormatSymbols;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 
+import org.xmlbeam.util.intern.CharSequenceParser;
 import org.xmlbeam.util.intern.ReflectionHelper;
 
 /**
  * @author <a href="https://github.com/SvenEwald">Sven Ewald</a>
  */
 @SuppressWarnings({ "serial", "javadoc" })
-public class DefaultTypeConverter implements TypeConverter, StringRenderer {
+public class DefaultTypeConverter implements CharSequenceTypeConverter, StringRenderer {
 
     public static abstract class Conversion<T> implements Serializable {
 
@@ -64,10 +64,17 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
 
     }
 
-    private final Map<Class<?>, Conversion<?>> CONVERSIONS = new HashMap<Class<?>, Conversion<?>>();
+    private final ConcurrentMap<Class<?>, Conversion<?>> CONVERSIONS = new ConcurrentHashMap<Class<?>, Conversion<?>>();
+    /**
+     * Types already known to have no conversion. Avoids repeating the reflective lookup for every
+     * sub projection.
+     */
+    private final ConcurrentMap<Class<?>, Boolean> NOT_CONVERTABLE = new ConcurrentHashMap<Class<?>, Boolean>();
+    private final Set<Class<?>> CUSTOMIZED = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
     private Locale locale;
     private TimeZone timezone;
     private DecimalFormat decimalFormat;
+    private transient volatile FormatCache formatCache;
 
     public DefaultTypeConverter(final Locale locale, final TimeZone timezone) {
         setLocale(locale);
@@ -250,7 +257,7 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
             @Override
             public Date convert(final String data) {
                 try {
-                    return DateFormat.getTimeInstance(DateFormat.SHORT, locale).parse(data);
+                    return getFormatCache().getShortTimeFormat().parse(data);
                 } catch (ParseException e) {
                     NumberFormatException exception = new NumberFormatException(data);
                     exception.initCause(e);
@@ -260,10 +267,8 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
 
             @Override
             public Date convertWithPattern(final String data, final String pattern) {
-                SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, DateFormatSymbols.getInstance(locale));
-                dateFormat.setTimeZone(timezone);
                 try {
-                    return dateFormat.parse(data);
+                    return getFormatCache().getDateFormat(pattern).parse(data);
                 } catch (ParseException e) {
                     throw new IllegalArgumentException(e);
                 }
@@ -279,10 +284,8 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
 
             @Override
             public BigDecimal convertWithPattern(final String data, final String pattern) {
-                DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance(locale);
-                decimalFormat.setParseBigDecimal(true);
                 try {
-                    return (BigDecimal) decimalFormat.parseObject(data);
+                    return (BigDecimal) getFormatCache().getBigDecimalFormat().parseObject(data);
                 } catch (ParseException e) {
                     NumberFormatException exception = new NumberFormatException(data);
                     exception.initCause(e);
@@ -295,7 +298,7 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
             @Override
             public Number convert(final String data) {
                 try {
-                    return NumberFormat.getInstance(locale).parse(data);
+                    return getFormatCache().getNumberFormat().parse(data);
                 } catch (ParseException e) {
                     NumberFormatException exception = new NumberFormatException(data);
                     exception.initCause(e);
@@ -309,6 +312,33 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
             }
         });
 
+        for (Class<?> type : TemporalConversion.getSupportedTypes()) {
+            putTemporalConversion(type);
+        }
+    }
+
+    private <T> void putTemporalConversion(final Class<T> type) {
+        CONVERSIONS.put(type, new TemporalConversion<T>(type, this));
+    }
+
+    private FormatCache getFormatCache() {
+        FormatCache cache = formatCache;
+        if (cache == null) {
+            cache = new FormatCache(locale, timezone, decimalFormat);
+            formatCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * @param pattern
+     * @param type
+     *            java.time type to be parsed or formatted. Only types without own zone get the time
+     *            zone of this converter.
+     * @return shared DateTimeFormatter for the pattern, locale and time zone of this converter.
+     */
+    Object getDateTimeFormatter(final String pattern, final Class<?> type) {
+        return getFormatCache().getDateTimeFormatter(pattern, TemporalConversion.needsTimeZone(type));
     }
 
     /**
@@ -316,9 +346,8 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
      * @return
      */
     protected Number parseWithPattern(final String data, final String pattern) {
-        decimalFormat.applyPattern(pattern);
         try {
-            return decimalFormat.parse(data);
+            return getFormatCache().getDecimalFormat(pattern).parse(data);
         } catch (ParseException e) {
             throw new IllegalArgumentException("can not parse '" + data + "' with pattern '" + pattern + "'", e);
         }
@@ -342,6 +371,41 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
         return (T) conversion.convert(data);
     }
 
+    /**
+     * {@inheritDoc} Integral numbers and booleans are parsed directly from the text, unless a
+     * format pattern is given or the conversion for the type was replaced.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T convertText(final Class<T> targetType, final CharSequence data, final String formatPattern) {
+        if ((data != null) && (formatPattern == null) && isDefaultConversion(targetType)) {
+            final Object value = parseText(targetType, data);
+            if (value != null) {
+                return (T) value;
+            }
+        }
+        return convertTo(targetType, data == null ? null : data.toString(), formatPattern);
+    }
+
+    private static Object parseText(final Class<?> targetType, final CharSequence data) {
+        if (Integer.TYPE.equals(targetType) || Integer.class.equals(targetType)) {
+            return Integer.valueOf((int) CharSequenceParser.parseLong(data, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+        if (Long.TYPE.equals(targetType) || Long.class.equals(targetType)) {
+            return Long.valueOf(CharSequenceParser.parseLong(data, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        if (Boolean.TYPE.equals(targetType) || Boolean.class.equals(targetType)) {
+            return Boolean.valueOf(CharSequenceParser.parseBoolean(data));
+        }
+        if (Short.TYPE.equals(targetType) || Short.class.equals(targetType)) {
+            return Short.valueOf((short) CharSequenceParser.parseLong(data, Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+        if (Byte.TYPE.equals(targetType) || Byte.class.equals(targetType)) {
+            return Byte.valueOf((byte) CharSequenceParser.parseLong(data, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        }
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -353,18 +417,22 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
         if (CONVERSIONS.containsKey(targetType)) {
             return true;
         }
+        if (NOT_CONVERTABLE.containsKey(targetType)) {
+            return false;
+        }
         Constructor<T> constructor = ReflectionHelper.getCallableConstructorForParams(targetType, String.class);
         if (constructor != null) {
-            CONVERSIONS.put(targetType, new StringConstructorConversion<T>(constructor, null));
+            CONVERSIONS.putIfAbsent(targetType, new StringConstructorConversion<T>(constructor, null));
             return true;
         }
 
         Method factory = ReflectionHelper.getCallableFactoryForParams(targetType, String.class);
         if (factory != null) {
-            CONVERSIONS.put(targetType, new StringFactoryConversion<T>(factory, null));
+            CONVERSIONS.putIfAbsent(targetType, new StringFactoryConversion<T>(factory, null));
             return true;
         }
 
+        NOT_CONVERTABLE.put(targetType, Boolean.TRUE);
         return false;
     }
 
@@ -377,14 +445,26 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
 
     public <T> DefaultTypeConverter setConversionForType(final Class<T> type, final Conversion<T> conversion) {
         assert type != null;
+        CUSTOMIZED.add(type);
         if (conversion == null) {
             CONVERSIONS.remove(type);
             return this;
         }
         CONVERSIONS.put(type, conversion);
+        NOT_CONVERTABLE.remove(type);
         return this;
     }
 
+    /**
+     * @param type
+     * @return true if values of this type are converted by the built in conversion. Callers may
+     *         then parse values without formatting pattern directly, e.g. to avoid boxing of
+     *         primitives. Always false for subclasses, because they may override convertTo.
+     */
+    public boolean isDefaultConversion(final Class<?> type) {
+        return (getClass() == DefaultTypeConverter.class) && CONVERSIONS.containsKey(type) && !CUSTOMIZED.contains(type);
+    }
+
     public DefaultTypeConverter setLocale(final Locale locale) {
         if (locale == null) {
             throw new IllegalArgumentException("You must provide a Locale, not null");
@@ -395,6 +475,7 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
         }
         this.decimalFormat = (DecimalFormat) format;
         this.locale = locale;
+        this.formatCache = null;
         return this;
     }
 
@@ -403,6 +484,7 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
             throw new IllegalArgumentException("You must provide a timezone, not null");
         }
         this.timezone = timezone;
+        this.formatCache = null;
         return this;
     }
 
@@ -413,14 +495,13 @@ public class DefaultTypeConverter implements TypeConverter, StringRenderer {
             return data == null ? null : data.toString();
         }
         if (Date.class.isAssignableFrom(dataType)) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(optionalFormatPattern[0], DateFormatSymbols.getInstance(locale));
-            dateFormat.setTimeZone(timezone);
-            return dateFormat.format(data);
+            return getFormatCache().getDateFormat(optionalFormatPattern[0]).format(data);
         }
         if (isNumber(dataType)) {
-            DecimalFormat clone = (DecimalFormat) decimalFormat.clone();
-            clone.applyPattern(optionalFormatPattern[0]);
-            return clone.format(data);
+            return getFormatCache().getDecimalFormat(optionalFormatPattern[0]).format(data);
+        }
+        if (TemporalConversion.isTemporal(dataType)) {
+            return TemporalConversion.format(getDateTimeFormatter(optionalFormatPattern[0], data.getClass()), data);
         }
         throw new IllegalArgumentException("Type " + data.getClass().getSimpleName() + " can not be formatted using a pattern");
     }
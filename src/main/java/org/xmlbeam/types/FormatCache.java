@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.types;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+
+import org.xmlbeam.util.intern.LRUCache;
+
+/**
+ * Formatters for one locale and time zone. DateFormat and DecimalFormat are not thread safe, so
+ * they are cached per thread. Immutable DateTimeFormatters are shared. Callers must not modify
+ * the returned formats.
+ *
+ * @author sven
+ */
+final class FormatCache {
+
+    private static final int MAX_PATTERNS_PER_THREAD = 64;
+
+    private static final class BoundedMap<V> extends LinkedHashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+
+        BoundedMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return size() > MAX_PATTERNS_PER_THREAD;
+        }
+    }
+
+    private static final class ThreadFormats {
+        final Map<String, DateFormat> dateFormats = new BoundedMap<DateFormat>();
+        final Map<String, DecimalFormat> decimalFormats = new BoundedMap<DecimalFormat>();
+        DateFormat shortTimeFormat;
+        DecimalFormat numberFormat;
+        DecimalFormat bigDecimalFormat;
+    }
+
+    private final Locale locale;
+    private final TimeZone timezone;
+    private final DecimalFormat prototype;
+    private final LRUCache<String, Object> dateTimeFormatters = new LRUCache<String, Object>(256);
+    private final LRUCache<String, Object> zonedDateTimeFormatters = new LRUCache<String, Object>(256);
+    private final ThreadLocal<ThreadFormats> threadFormats = new ThreadLocal<ThreadFormats>() {
+        @Override
+        protected ThreadFormats initialValue() {
+            return new ThreadFormats();
+        }
+    };
+
+    /**
+     * @param locale
+     * @param timezone
+     * @param prototype
+     *            number format for the locale. Will be cloned, never modified.
+     */
+    FormatCache(final Locale locale, final TimeZone timezone, final DecimalFormat prototype) {
+        this.locale = locale;
+        this.timezone = (TimeZone) timezone.clone();
+        this.prototype = prototype;
+    }
+
+    /**
+     * @param pattern
+     * @return SimpleDateFormat for the pattern, confined to the current thread.
+     */
+    DateFormat getDateFormat(final String pattern) {
+        final Map<String, DateFormat> formats = threadFormats.get().dateFormats;
+        DateFormat format = formats.get(pattern);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern, DateFormatSymbols.getInstance(locale));
+            format.setTimeZone(timezone);
+            formats.put(pattern, format);
+        }
+        return format;
+    }
+
+    /**
+     * @return short time format of the locale, confined to the current thread.
+     */
+    DateFormat getShortTimeFormat() {
+        final ThreadFormats formats = threadFormats.get();
+        if (formats.shortTimeFormat == null) {
+            formats.shortTimeFormat = DateFormat.getTimeInstance(DateFormat.SHORT, locale);
+        }
+        return formats.shortTimeFormat;
+    }
+
+    /**
+     * @param pattern
+     * @return DecimalFormat with the pattern applied, confined to the current thread.
+     */
+    DecimalFormat getDecimalFormat(final String pattern) {
+        final Map<String, DecimalFormat> formats = threadFormats.get().decimalFormats;
+        DecimalFormat format = formats.get(pattern);
+        if (format == null) {
+            format = (DecimalFormat) prototype.clone();
+            format.applyPattern(pattern);
+            formats.put(pattern, format);
+        }
+        return format;
+    }
+
+    /**
+     * @return number format of the locale, confined to the current thread.
+     */
+    DecimalFormat getNumberFormat() {
+        final ThreadFormats formats = threadFormats.get();
+        if (formats.numberFormat == null) {
+            formats.numberFormat = (DecimalFormat) prototype.clone();
+        }
+        return formats.numberFormat;
+    }
+
+    /**
+     * @return number format of the locale parsing to BigDecimal, confined to the current thread.
+     */
+    DecimalFormat getBigDecimalFormat() {
+        final ThreadFormats formats = threadFormats.get();
+        if (formats.bigDecimalFormat == null) {
+            formats.bigDecimalFormat = (DecimalFormat) prototype.clone();
+            formats.bigDecimalFormat.setParseBigDecimal(true);
+        }
+        return formats.bigDecimalFormat;
+    }
+
+    /**
+     * @param pattern
+     * @param withTimeZone
+     *            true to get a formatter overriding the zone with the time zone of this cache.
+     * @return shared DateTimeFormatter for the pattern.
+     */
+    Object getDateTimeFormatter(final String pattern, final boolean withTimeZone) {
+        final LRUCache<String, Object> formatters = withTimeZone ? zonedDateTimeFormatters : dateTimeFormatters;
+        final Object formatter = formatters.get(pattern);
+        if (formatter != null) {
+            return formatter;
+        }
+        return formatters.put(pattern, TemporalConversion.createFormatter(pattern, locale, withTimeZone ? timezone : null));
+    }
+}
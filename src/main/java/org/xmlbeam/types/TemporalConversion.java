@@ -0,0 +1,182 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.types;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.xmlbeam.exceptions.XBException;
+import org.xmlbeam.types.DefaultTypeConverter.Conversion;
+
+/**
+ * Conversion for the java.time types. The java.time API is accessed reflectively, so these
+ * conversions are registered on Java 8 and later only. Pattern based conversions use cached
+ * DateTimeFormatter instances, which are immutable and shared between threads.
+ *
+ * @author sven
+ * @param <T>
+ */
+class TemporalConversion<T> extends Conversion<T> {
+
+    private static final long serialVersionUID = -2880366624386716893L;
+
+    private static final String[] TYPE_NAMES = { "java.time.LocalDate", "java.time.LocalTime", "java.time.LocalDateTime", "java.time.Instant", "java.time.OffsetDateTime", "java.time.ZonedDateTime" };
+
+    private static final Class<?> FORMATTER_CLASS = findClass("java.time.format.DateTimeFormatter");
+    private static final Class<?> TEMPORAL_ACCESSOR_CLASS = findClass("java.time.temporal.TemporalAccessor");
+    private static final Method OF_PATTERN = findMethod(FORMATTER_CLASS, "ofPattern", String.class, Locale.class);
+    private static final Method WITH_ZONE = findMethod(FORMATTER_CLASS, "withZone", findClass("java.time.ZoneId"));
+    private static final Method FORMAT = findMethod(FORMATTER_CLASS, "format", TEMPORAL_ACCESSOR_CLASS);
+    private static final Method PARSE = findMethod(FORMATTER_CLASS, "parse", CharSequence.class);
+    private static final Method TO_ZONE_ID = findMethod(TimeZone.class, "toZoneId");
+    private static final Class<?> INSTANT_CLASS = findClass("java.time.Instant");
+
+    private static final Map<Class<?>, Method> PARSE_METHODS = new HashMap<Class<?>, Method>();
+    private static final Map<Class<?>, Method> FROM_METHODS = new HashMap<Class<?>, Method>();
+    private static final List<Class<?>> SUPPORTED_TYPES;
+    static {
+        final List<Class<?>> types = new ArrayList<Class<?>>();
+        if ((OF_PATTERN != null) && (WITH_ZONE != null) && (FORMAT != null) && (PARSE != null) && (TO_ZONE_ID != null)) {
+            for (String name : TYPE_NAMES) {
+                final Class<?> type = findClass(name);
+                final Method parse = findMethod(type, "parse", CharSequence.class);
+                final Method from = findMethod(type, "from", TEMPORAL_ACCESSOR_CLASS);
+                if ((parse == null) || (from == null)) {
+                    continue;
+                }
+                PARSE_METHODS.put(type, parse);
+                FROM_METHODS.put(type, from);
+                types.add(type);
+            }
+        }
+        SUPPORTED_TYPES = Collections.unmodifiableList(types);
+    }
+
+    private final Class<T> type;
+    private final DefaultTypeConverter converter;
+
+    TemporalConversion(final Class<T> type, final DefaultTypeConverter converter) {
+        super(null);
+        assert PARSE_METHODS.containsKey(type);
+        this.type = type;
+        this.converter = converter;
+    }
+
+    @Override
+    public T convert(final String data) {
+        return type.cast(invoke(PARSE_METHODS.get(type), null, data.trim()));
+    }
+
+    @Override
+    public T convertWithPattern(final String data, final String pattern) {
+        final Object parsed = invoke(PARSE, converter.getDateTimeFormatter(pattern, type), data);
+        return type.cast(invoke(FROM_METHODS.get(type), null, parsed));
+    }
+
+    /**
+     * @return java.time types supported by this conversion. Empty if the runtime does not provide
+     *         java.time.
+     */
+    static List<Class<?>> getSupportedTypes() {
+        return SUPPORTED_TYPES;
+    }
+
+    /**
+     * @param type
+     * @return true if objects of this type can be formatted by a DateTimeFormatter.
+     */
+    static boolean isTemporal(final Class<?> type) {
+        return (TEMPORAL_ACCESSOR_CLASS != null) && TEMPORAL_ACCESSOR_CLASS.isAssignableFrom(type);
+    }
+
+    /**
+     * An Instant carries no zone, so its pattern formatter needs the time zone of the converter to
+     * resolve date and time fields. All other types keep their own zone or offset.
+     *
+     * @param type
+     * @return true if pattern formatters for this type need a time zone.
+     */
+    static boolean needsTimeZone(final Class<?> type) {
+        return (INSTANT_CLASS != null) && INSTANT_CLASS.isAssignableFrom(type);
+    }
+
+    /**
+     * @param pattern
+     * @param locale
+     * @param timezone
+     *            override zone of the formatter or null to keep the zone of formatted values.
+     * @return a new DateTimeFormatter
+     */
+    static Object createFormatter(final String pattern, final Locale locale, final TimeZone timezone) {
+        final Object formatter = invoke(OF_PATTERN, null, pattern, locale);
+        return timezone == null ? formatter : invoke(WITH_ZONE, formatter, invoke(TO_ZONE_ID, timezone));
+    }
+
+    /**
+     * @param formatter
+     * @param temporal
+     * @return formatted string
+     */
+    static String format(final Object formatter, final Object temporal) {
+        return (String) invoke(FORMAT, formatter, temporal);
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            assert false : "Unreachable code";
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new XBException("Exception while trying to invoke " + method.toGenericString(), e.getCause());
+        }
+    }
+
+    private static Class<?> findClass(final String name) {
+        try {
+            return Class.forName(name, false, TemporalConversion.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(final Class<?> clazz, final String name, final Class<?>... parameterTypes) {
+        if (clazz == null) {
+            return null;
+        }
+        for (Class<?> parameterType : parameterTypes) {
+            if (parameterType == null) {
+                return null;
+            }
+        }
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -20,6 +20,10 @@ import java.util.Map;
 /**
  * Instances of this type will be bound to an element in the dom tree. Read and write operations on
  * this map will directly be mapped to the xml document.
+ * <p>
+ * The entries returned by entrySet(), keySet() and values() are cached until the document is
+ * changed through a projection, an auto map, an auto list or an auto value. After changing the DOM
+ * directly, call {@link org.xmlbeam.XBProjector#notifyDOMChanged(org.w3c.dom.Node)}.
  *
  * @author sven
  * @param <T>
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.util.intern;
+
+/**
+ * Parses integral numbers and booleans from a CharSequence without creating intermediate
+ * strings. Leading and trailing whitespace is ignored like {@link String#trim()} does.
+ *
+ * @author sven
+ */
+public final class CharSequenceParser {
+
+    private CharSequenceParser() {
+    }
+
+    /**
+     * Same as {@code Long.parseLong(data.trim())} with the given value range.
+     *
+     * @param data
+     * @param min
+     * @param max
+     * @return parsed value
+     * @throws NumberFormatException
+     *             if data is no number or out of range.
+     */
+    public static long parseLong(final CharSequence data, final long min, final long max) {
+        int start = skipLeadingWhitespace(data);
+        final int end = skipTrailingWhitespace(data, start);
+        if (start == end) {
+            throw invalidNumber(data, start, end);
+        }
+        boolean negative = false;
+        final char first = data.charAt(start);
+        if ((first == '-') || (first == '+')) {
+            negative = first == '-';
+            if (++start == end) {
+                throw invalidNumber(data, start - 1, end);
+            }
+        }
+        // Accumulate negatively, because the range of negative values is larger.
+        final long limit = negative ? min : -max;
+        final long multmin = limit / 10;
+        long result = 0;
+        for (int i = start; i < end; ++i) {
+            final int digit = Character.digit(data.charAt(i), 10);
+            if ((digit < 0) || (result < multmin)) {
+                throw invalidNumber(data, start, end);
+            }
+            result *= 10;
+            if (result < (limit + digit)) {
+                throw invalidNumber(data, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Same as {@code Boolean.valueOf(data.trim())}.
+     *
+     * @param data
+     * @return true if data is "true", ignoring case.
+     */
+    public static boolean parseBoolean(final CharSequence data) {
+        final int start = skipLeadingWhitespace(data);
+        final int end = skipTrailingWhitespace(data, start);
+        if ((end - start) != 4) {
+            return false;
+        }
+        return (Character.toLowerCase(data.charAt(start)) == 't') && (Character.toLowerCase(data.charAt(start + 1)) == 'r') && (Character.toLowerCase(data.charAt(start + 2)) == 'u') && (Character.toLowerCase(data.charAt(start + 3)) == 'e');
+    }
+
+    /**
+     * Same as {@code data.trim().isEmpty()}.
+     *
+     * @param data
+     * @return true if data contains whitespace only.
+     */
+    public static boolean isBlank(final CharSequence data) {
+        return skipLeadingWhitespace(data) == data.length();
+    }
+
+    private static int skipLeadingWhitespace(final CharSequence data) {
+        int start = 0;
+        final int length = data.length();
+        while ((start < length) && (data.charAt(start) <= ' ')) {
+            ++start;
+        }
+        return start;
+    }
+
+    private static int skipTrailingWhitespace(final CharSequence data, final int start) {
+        int end = data.length();
+        while ((end > start) && (data.charAt(end - 1) <= ' ')) {
+            --end;
+        }
+        return end;
+    }
+
+    private static NumberFormatException invalidNumber(final CharSequence data, final int start, final int end) {
+        return new NumberFormatException("For input string: \"" + data.subSequence(start, end) + "\"");
+    }
+}
@@ -25,6 +25,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.TransformerConfigurationException;
@@ -51,6 +53,10 @@ import org.xmlbeam.exceptions.XBException;
  */
 public final class DOMHelper {
 
+    private static final String READ_WRITE_LOCK_KEY = "org.xmlbeam.readWriteLock";
+
+    private static final String MODIFICATION_COUNT_KEY = "org.xmlbeam.modificationCount";
+
     /**
      * Null safe comparator for DOM nodes.
      */
@@ -389,6 +395,57 @@ public final class DOMHelper {
         return documentOrElement.getOwnerDocument();
     }
 
+    /**
+     * The lock is stored as user data of the document, so all projections of one document share
+     * it, no matter which projector created them.
+     *
+     * @param document
+     * @return read write lock for the given document
+     */
+    public static ReadWriteLock getReadWriteLockFor(final Document document) {
+        synchronized (document) {
+            ReadWriteLock lock = (ReadWriteLock) document.getUserData(READ_WRITE_LOCK_KEY);
+            if (lock == null) {
+                lock = new ReentrantReadWriteLock();
+                document.setUserData(READ_WRITE_LOCK_KEY, lock, null);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * Count a modification of the document owning the given node. Only modifications done by
+     * projections, auto maps, auto lists and auto values are counted, not direct DOM changes.
+     *
+     * @param node
+     */
+    public static void markModified(final Node node) {
+        final Document document = getOwnerDocumentFor(node);
+        if (document == null) {
+            return;
+        }
+        final long[] count = (long[]) document.getUserData(MODIFICATION_COUNT_KEY);
+        if (count == null) {
+            document.setUserData(MODIFICATION_COUNT_KEY, new long[] { 1 }, null);
+            return;
+        }
+        ++count[0];
+    }
+
+    /**
+     * @param node
+     * @return number of counted modifications of the document owning the given node.
+     * @see #markModified(Node)
+     */
+    public static long getModificationCount(final Node node) {
+        final Document document = getOwnerDocumentFor(node);
+        if (document == null) {
+            return 0;
+        }
+        final long[] count = (long[]) document.getUserData(MODIFICATION_COUNT_KEY);
+        return count == null ? 0 : count[0];
+    }
+
     private static Element createElement(final Document document, final String elementName) {
         final String prefix = getPrefixOfQName(elementName);// .replaceAll("(:.*)|([^:])*", "");
         final String namespaceURI = prefix.isEmpty() ? null : document.lookupNamespaceURI(prefix);
@@ -604,19 +661,37 @@ public final class DOMHelper {
      * @return Text content of this node, without child content.
      */
     public static String directTextContent(final Node item) {
-        NodeList childNodes = item.getChildNodes();
-        if (childNodes == null) {
-            return null;
-        }
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < childNodes.getLength(); ++i) {
-            Node child = childNodes.item(i);
-            if (child.getNodeType() != Node.TEXT_NODE) {
+        final CharSequence text = directText(item);
+        return text == null ? null : text.toString();
+    }
+
+    /**
+     * Text of this node, without child content. CDATA sections count as text. If there is exactly
+     * one text child, its value is returned without copying.
+     *
+     * @param item
+     * @return Text content of this node, without child content.
+     */
+    public static CharSequence directText(final Node item) {
+        String singleText = null;
+        StringBuilder sb = null;
+        for (Node child = item.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if ((child.getNodeType() != Node.TEXT_NODE) && (child.getNodeType() != Node.CDATA_SECTION_NODE)) {
                 continue;
             }
+            if (singleText == null) {
+                singleText = child.getNodeValue();
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(singleText);
+            }
             sb.append(child.getNodeValue());
         }
-        return sb.toString();
+        if (sb != null) {
+            return sb;
+        }
+        return singleText == null ? "" : singleText;
     }
 
     /**
@@ -0,0 +1,156 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.util.intern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded, thread safe cache with an approximated least recently used eviction policy. Reads do
+ * not lock. When the cache grows beyond its capacity, the least recently used quarter of the
+ * entries is evicted in one go.
+ *
+ * @author sven
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class LRUCache<K, V> {
+
+    private static final class CacheEntry<V> {
+        final V value;
+        long lastAccess;
+
+        CacheEntry(final V value, final long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class EvictionCandidate<K> {
+        final K key;
+        final Object entry;
+        final long lastAccess;
+
+        EvictionCandidate(final K key, final CacheEntry<?> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    private static final Comparator<EvictionCandidate<?>> LEAST_RECENTLY_USED_FIRST = new Comparator<EvictionCandidate<?>>() {
+        @Override
+        public int compare(final EvictionCandidate<?> o1, final EvictionCandidate<?> o2) {
+            return o1.lastAccess < o2.lastAccess ? -1 : (o1.lastAccess == o2.lastAccess ? 0 : 1);
+        }
+    };
+
+    private final ConcurrentMap<K, CacheEntry<V>> map = new ConcurrentHashMap<K, CacheEntry<V>>();
+    private final int capacity;
+
+    /**
+     * Access counter. Neither the counter nor the access stamps are synchronized on purpose. Lost
+     * updates just make the eviction order a little less accurate.
+     */
+    private long clock = 0;
+
+    /**
+     * @param capacity
+     *            maximum number of entries to keep
+     */
+    public LRUCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive, but is " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param key
+     * @return cached value or null if there is none.
+     */
+    public V get(final K key) {
+        final CacheEntry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastAccess = ++clock;
+        return entry.value;
+    }
+
+    /**
+     * Store a value. If another thread stored a value for the same key in the meantime, that
+     * value is kept and returned.
+     *
+     * @param key
+     * @param value
+     * @return the value now associated with the key.
+     */
+    public V put(final K key, final V value) {
+        final CacheEntry<V> previous = map.putIfAbsent(key, new CacheEntry<V>(value, ++clock));
+        if (previous != null) {
+            return previous.value;
+        }
+        if (map.size() > capacity) {
+            evict();
+        }
+        return value;
+    }
+
+    /**
+     * @param key
+     */
+    public void remove(final K key) {
+        map.remove(key);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * @return current number of entries
+     */
+    public int size() {
+        return map.size();
+    }
+
+    private synchronized void evict() {
+        if (map.size() <= capacity) {
+            return;
+        }
+        // Take a snapshot of the access times, they may change while sorting.
+        final List<EvictionCandidate<K>> candidates = new ArrayList<EvictionCandidate<K>>(map.size());
+        for (Map.Entry<K, CacheEntry<V>> e : map.entrySet()) {
+            candidates.add(new EvictionCandidate<K>(e.getKey(), e.getValue()));
+        }
+        Collections.sort(candidates, LEAST_RECENTLY_USED_FIRST);
+        final int toRemove = Math.min(candidates.size(), (candidates.size() - capacity) + Math.max(1, capacity / 4));
+        for (int i = 0; i < toRemove; ++i) {
+            map.remove(candidates.get(i).key, candidates.get(i).entry);
+        }
+    }
+}
@@ -25,12 +25,16 @@ import org.xmlbeam.types.StringRenderer;
 import org.xmlbeam.util.intern.duplex.DuplexExpression;
 
 /**
- *
+ * Resolves XPath variables to method parameters. A resolver is compiled into its expression, so one
+ * instance serves all invocations of this expression. The parameters of the current invocation are
+ * bound per thread, which makes the resolver safe to use from concurrent invocations. Evaluations
+ * outside of an invocation, e.g. by an AutoList, see the parameters of the latest invocation.
  */
 public class MethodParamVariableResolver implements XPathVariableResolver {
 
     private final XPathVariableResolver originalResolver;
-    private Object[] args;
+    private volatile Object[] args;
+    private final ThreadLocal<Object[]> boundArgs = new ThreadLocal<Object[]>();
     private final Method method;
     private final DuplexExpression expression;
     private final StringRenderer stringRenderer;
@@ -53,6 +57,7 @@ public class MethodParamVariableResolver implements XPathVariableResolver {
     @Override
     public Object resolveVariable(final QName variableName) {
         if ((variableName != null) && (variableName.getLocalPart() != null)) {
+            final Object[] args = getArgs();
             final String uppercaseName = variableName.getLocalPart().toUpperCase(Locale.ENGLISH);
             Integer index = ReflectionHelper.getMethodParameterIndexes(method).get(uppercaseName);
             if (index != null) {
@@ -70,9 +75,25 @@ public class MethodParamVariableResolver implements XPathVariableResolver {
     }
 
     /**
+     * Bind the parameters of the current invocation to the calling thread.
+     *
      * @param args
      */
     public void updateArgs(final Object[] args) {
+        boundArgs.set(args);
         this.args = args;
     }
+
+    /**
+     * Remove the parameters bound to the calling thread, so pooled threads do not keep them
+     * reachable.
+     */
+    public void clearArgs() {
+        boundArgs.remove();
+    }
+
+    private Object[] getArgs() {
+        final Object[] currentArgs = boundArgs.get();
+        return currentArgs == null ? args : currentArgs;
+    }
 }
@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.util.intern;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
+
+import org.xml.sax.InputSource;
+import org.xmlbeam.config.XMLFactoriesConfig;
+
+/**
+ * Compiled expression that may be shared between threads. Neither XPath nor XPathExpression are
+ * thread safe, so each thread evaluates its own compiled expression. The compiling thread uses the
+ * given one, other threads compile the expression again on first use with a new XPath configured
+ * like the original one.
+ *
+ * @author sven
+ */
+public final class PerThreadXPathExpression implements XPathExpression {
+
+    private final String expression;
+    private final XMLFactoriesConfig config;
+    private final NamespaceContext namespaceContext;
+    private final XPathVariableResolver variableResolver;
+    private final XPathFunctionResolver functionResolver;
+    private final ThreadLocal<XPathExpression> expressions = new ThreadLocal<XPathExpression>();
+
+    private PerThreadXPathExpression(final XMLFactoriesConfig config, final XPath xPath, final String expression, final XPathExpression compiled) {
+        this.expression = expression;
+        this.config = config;
+        this.namespaceContext = xPath.getNamespaceContext();
+        this.variableResolver = xPath.getXPathVariableResolver();
+        this.functionResolver = xPath.getXPathFunctionResolver();
+        expressions.set(compiled);
+    }
+
+    /**
+     * Compile an expression to be shared between threads. Simple location paths are evaluated
+     * directly on the DOM, see {@link SimplePathExpression}.
+     *
+     * @param config
+     *            creates XPath instances for other threads
+     * @param xPath
+     *            compiles the expression for the calling thread
+     * @param expression
+     * @return compiled expression
+     * @throws XPathExpressionException
+     */
+    public static XPathExpression compile(final XMLFactoriesConfig config, final XPath xPath, final String expression) throws XPathExpressionException {
+        final XPathExpression compiled = xPath.compile(expression);
+        return SimplePathExpression.create(expression, new PerThreadXPathExpression(config, xPath, expression, compiled));
+    }
+
+    private XPathExpression getExpression() throws XPathExpressionException {
+        XPathExpression compiled = expressions.get();
+        if (compiled == null) {
+            final XPath xPath = config.createXPathFactory().newXPath();
+            if (namespaceContext != null) {
+                xPath.setNamespaceContext(namespaceContext);
+            }
+            if (variableResolver != null) {
+                xPath.setXPathVariableResolver(variableResolver);
+            }
+            if (functionResolver != null) {
+                xPath.setXPathFunctionResolver(functionResolver);
+            }
+            compiled = xPath.compile(expression);
+            expressions.set(compiled);
+        }
+        return compiled;
+    }
+
+    @Override
+    public Object evaluate(final Object item, final QName returnType) throws XPathExpressionException {
+        return getExpression().evaluate(item, returnType);
+    }
+
+    @Override
+    public String evaluate(final Object item) throws XPathExpressionException {
+        return getExpression().evaluate(item);
+    }
+
+    @Override
+    public Object evaluate(final InputSource source, final QName returnType) throws XPathExpressionException {
+        return getExpression().evaluate(source, returnType);
+    }
+
+    @Override
+    public String evaluate(final InputSource source) throws XPathExpressionException {
+        return getExpression().evaluate(source);
+    }
+}
@@ -54,6 +54,35 @@ public final class ReflectionHelper {
     private final static int PUBLIC_STATIC_MODIFIER = Modifier.STATIC | Modifier.PUBLIC;
     private final static Pattern VALID_FACTORY_METHOD_NAMES = Pattern.compile("valueOf|of|parse|getInstance");
     private final static Method STREAM = findMethodByName(List.class, "stream");
+    private final static Method INT_STREAM = findMethod(Arrays.class, "stream", int[].class);
+    private final static Method LONG_STREAM = findMethod(Arrays.class, "stream", long[].class);
+    private final static Method DOUBLE_STREAM = findMethod(Arrays.class, "stream", double[].class);
+    private final static Class<?> LOOKUP_CLASS = findClass("java.lang.invoke.MethodHandles$Lookup");
+    private final static Method PRIVATE_LOOKUP_IN = findMethod(findClass("java.lang.invoke.MethodHandles"), "privateLookupIn", Class.class, LOOKUP_CLASS);
+    private final static Class<?> METHOD_HANDLE_CLASS = findClass("java.lang.invoke.MethodHandle");
+    private final static Class<?> METHOD_TYPE_CLASS = findClass("java.lang.invoke.MethodType");
+    private final static Method AS_SPREADER = findMethod(METHOD_HANDLE_CLASS, "asSpreader", Class.class, Integer.TYPE);
+    private final static Method AS_TYPE = findMethod(METHOD_HANDLE_CLASS, "asType", METHOD_TYPE_CLASS);
+    private final static Method METHOD_TYPE = findMethod(METHOD_TYPE_CLASS, "methodType", Class.class, Class[].class);
+    private final static Method AS_INTERFACE_INSTANCE = findMethod(findClass("java.lang.invoke.MethodHandleProxies"), "asInterfaceInstance", Class.class, METHOD_HANDLE_CLASS);
+
+    /**
+     * Calls a method on a target object without reflection on each call.
+     *
+     * @see ReflectionHelper#resolveDefaultMethodInvoker(Method)
+     */
+    public interface MethodInvoker {
+        /**
+         * @param target
+         *            receiver
+         * @param args
+         *            method arguments
+         * @return return value of invoked method, null for void methods
+         * @throws Throwable
+         *             (whatever the invoked method throws)
+         */
+        Object invoke(Object target, Object[] args) throws Throwable;
+    }
 
     private static Class<?> findClass(final String name) {
         try {
@@ -461,37 +490,30 @@ public final class ReflectionHelper {
     }
 
     /**
+     * Resolve a method handle calling the default implementation of an interface method. The
+     * handle is not bound to a receiver, so it can be resolved once and used for all projections.
+     * Method handles are accessed reflectively to stay compatible with Java 6.
+     *
      * @param method
-     * @param args
-     * @param proxy
-     * @return return value of invoked method
-     * @throws Throwable
-     *             (whatever the invoked method throws)
+     *            default method
+     * @return a java.lang.invoke.MethodHandle
      */
-    public static Object invokeDefaultMethod(final Method method, final Object[] args, final Object proxy) throws Throwable {
+    public static Object resolveDefaultMethodHandle(final Method method) {
+        if ((LOOKUP_CLASS == null) || (AS_SPREADER == null) || (AS_TYPE == null) || (METHOD_TYPE == null) || (AS_INTERFACE_INSTANCE == null)) {
+            throw new IllegalStateException("Default methods can not be invoked without java.lang.invoke.");
+        }
+        final Class<?> declaringClass = method.getDeclaringClass();
         try {
-            Class<?> MHclass = Class.forName("java.lang.invoke.MethodHandles");
-            Object lookup = MHclass.getMethod("lookup", (Class<?>[]) null).invoke(null, (Object[]) null);
-
-            Constructor<?> constructor = lookup.getClass().getDeclaredConstructor(Class.class);
-            constructor.setAccessible(true);
-            Object newLookupInstance = constructor.newInstance(method.getDeclaringClass());
-
-            Object in = newLookupInstance.getClass().getMethod("in", new Class<?>[] { Class.class }).invoke(newLookupInstance, method.getDeclaringClass());
-
-            Object unreflectSpecial = in.getClass().getMethod("unreflectSpecial", new Class<?>[] { Method.class, Class.class }).invoke(in, method, method.getDeclaringClass());
-            Object bindTo = unreflectSpecial.getClass().getMethod("bindTo", Object.class).invoke(unreflectSpecial, proxy);
-            try {
-                Object result = bindTo.getClass().getMethod("invokeWithArguments", Object[].class).invoke(bindTo, new Object[] { args });
-                return result;
-            } catch (InvocationTargetException e) {
-                if (e.getCause() != null) {
-                    throw e.getCause();
-                }
-                throw e;
+            Object lookup;
+            if (PRIVATE_LOOKUP_IN != null) {
+                // Java 9 and later
+                lookup = PRIVATE_LOOKUP_IN.invoke(null, declaringClass, findMethodByName(LOOKUP_CLASS.getDeclaringClass(), "lookup").invoke(null));
+            } else {
+                Constructor<?> constructor = LOOKUP_CLASS.getDeclaredConstructor(Class.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(declaringClass);
             }
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
+            return LOOKUP_CLASS.getMethod("unreflectSpecial", Method.class, Class.class).invoke(lookup, method, declaringClass);
         } catch (NoSuchMethodException e) {
             throw new RuntimeException(e);
         } catch (IllegalArgumentException e) {
@@ -507,6 +529,40 @@ public final class ReflectionHelper {
         }
     }
 
+    /**
+     * Resolve an invoker calling the default implementation of an interface method. The method
+     * handle is spread over an argument array and wrapped by MethodHandleProxies once, so calls do
+     * not go through invokeWithArguments() and Method.invoke(). Up to Java 20 MethodHandleProxies
+     * implements the interface with a JDK Proxy, so each call still passes an InvocationHandler.
+     *
+     * @param method
+     *            default method
+     * @return invoker for all receivers implementing the declaring interface
+     */
+    public static MethodInvoker resolveDefaultMethodInvoker(final Method method) {
+        final Object methodHandle = resolveDefaultMethodHandle(method);
+        try {
+            final Object spreader = AS_SPREADER.invoke(methodHandle, Object[].class, method.getParameterTypes().length);
+            final Object invokerType = METHOD_TYPE.invoke(null, Object.class, new Class<?>[] { Object.class, Object[].class });
+            return (MethodInvoker) AS_INTERFACE_INSTANCE.invoke(null, MethodInvoker.class, AS_TYPE.invoke(spreader, invokerType));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Method findMethod(final Class<?> clazz, final String name, final Class<?>... parameterTypes) {
+        if (clazz == null) {
+            return null;
+        }
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
     /**
      * Throws a throwable of type throwableType. The throwable will be created using an args
      * matching constructor or the default constructor if no matching constructor can be found.
@@ -584,6 +640,44 @@ public final class ReflectionHelper {
         return "java.util.stream.Stream".equals(returnType.getName());
     }
 
+    /**
+     * @param returnType
+     * @return int, long or double for IntStream, LongStream or DoubleStream. Null for any other
+     *         type.
+     */
+    public static Class<?> getPrimitiveStreamComponentType(final Class<?> returnType) {
+        final String name = returnType.getName();
+        if ("java.util.stream.IntStream".equals(name)) {
+            return Integer.TYPE;
+        }
+        if ("java.util.stream.LongStream".equals(name)) {
+            return Long.TYPE;
+        }
+        if ("java.util.stream.DoubleStream".equals(name)) {
+            return Double.TYPE;
+        }
+        return null;
+    }
+
+    /**
+     * @param array
+     *            int[], long[] or double[]
+     * @return Arrays.stream(array)
+     */
+    public static Object toPrimitiveStream(final Object array) {
+        final Method stream = array instanceof int[] ? INT_STREAM : array instanceof long[] ? LONG_STREAM : array instanceof double[] ? DOUBLE_STREAM : null;
+        if (stream == null) {
+            throw new IllegalArgumentException("Can not invoke Arrays.stream, you need at least a JDK8 to run this");
+        }
+        try {
+            return stream.invoke(null, array);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * @param result
      * @return List.stream()
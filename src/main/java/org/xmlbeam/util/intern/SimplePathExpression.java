@@ -0,0 +1,541 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.util.intern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Evaluates simple location paths directly on the DOM. Supported are absolute or relative paths of
+ * child element steps (names without prefix or '*'), optionally followed by an attribute step or
+ * text(). Element steps may have positional predicates or equality predicates on an attribute or a
+ * child element, like <code>/a/b[2]/c[@id='x']/@name</code>. Everything else, and every situation
+ * the DOM walk can not answer like XPath does, is evaluated by the JAXP expression.
+ *
+ * @author sven
+ */
+public final class SimplePathExpression implements XPathExpression {
+
+    /**
+     * Thrown when the DOM walk can not answer like XPath does.
+     */
+    private static final class FallbackRequired extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final FallbackRequired FALLBACK_REQUIRED = new FallbackRequired();
+
+    private static final int ELEMENT = 0;
+    private static final int ATTRIBUTE = 1;
+    private static final int TEXT = 2;
+    private static final int SELF = 3;
+
+    private static final class Predicate {
+        /**
+         * Position starting at 1. Only used if name is null.
+         */
+        final int position;
+        final boolean onAttribute;
+        final String name;
+        final String value;
+
+        Predicate(final int position, final boolean onAttribute, final String name, final String value) {
+            this.position = position;
+            this.onAttribute = onAttribute;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private static final class Step {
+        final int kind;
+        final String name;
+        final Predicate[] predicates;
+
+        Step(final int kind, final String name, final Predicate[] predicates) {
+            this.kind = kind;
+            this.name = name;
+            this.predicates = predicates;
+        }
+    }
+
+    private static final class ArrayNodeList implements NodeList {
+        private final List<Node> nodes;
+
+        ArrayNodeList(final List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public Node item(final int index) {
+            return (index < 0) || (index >= nodes.size()) ? null : nodes.get(index);
+        }
+
+        @Override
+        public int getLength() {
+            return nodes.size();
+        }
+    }
+
+    private final boolean absolute;
+    private final Step[] steps;
+    private final XPathExpression fallback;
+
+    private SimplePathExpression(final boolean absolute, final Step[] steps, final XPathExpression fallback) {
+        this.absolute = absolute;
+        this.steps = steps;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Compile an expression. Simple location paths get a direct DOM evaluation, all others are
+     * compiled by the given XPath only.
+     *
+     * @param xPath
+     * @param expression
+     * @return compiled expression
+     * @throws XPathExpressionException
+     */
+    public static XPathExpression compile(final XPath xPath, final String expression) throws XPathExpressionException {
+        return create(expression, xPath.compile(expression));
+    }
+
+    /**
+     * @param expression
+     * @param fallback
+     *            the compiled expression
+     * @return a direct DOM evaluation falling back to the given expression, or the given expression
+     *         itself if the path is not simple.
+     */
+    public static XPathExpression create(final String expression, final XPathExpression fallback) {
+        final SimplePathExpression simple = parse(expression, fallback);
+        return simple == null ? fallback : simple;
+    }
+
+    /**
+     * @param expression
+     * @return true if the expression would be evaluated directly on the DOM.
+     */
+    public static boolean isSimplePath(final String expression) {
+        return parse(expression, null) != null;
+    }
+
+    private static SimplePathExpression parse(final String expression, final XPathExpression fallback) {
+        final String path = expression.trim();
+        if (path.isEmpty()) {
+            return null;
+        }
+        final List<Step> steps = new ArrayList<Step>();
+        final boolean absolute = path.charAt(0) == '/';
+        int pos = absolute ? 1 : 0;
+        if (absolute && (path.length() == 1)) {
+            return new SimplePathExpression(true, new Step[0], fallback);
+        }
+        while (pos < path.length()) {
+            if ((!steps.isEmpty()) && (steps.get(steps.size() - 1).kind != ELEMENT) && (steps.get(steps.size() - 1).kind != SELF)) {
+                // Attribute and text steps must be the last ones.
+                return null;
+            }
+            final int end = findStepEnd(path, pos);
+            if (end <= pos) {
+                return null;
+            }
+            final Step step = parseStep(path.substring(pos, end));
+            if (step == null) {
+                return null;
+            }
+            steps.add(step);
+            pos = end + 1;
+            if (pos == path.length()) {
+                // Trailing slash
+                return null;
+            }
+        }
+        return new SimplePathExpression(absolute, steps.toArray(new Step[steps.size()]), fallback);
+    }
+
+    private static int findStepEnd(final String path, final int start) {
+        char quote = 0;
+        for (int i = start; i < path.length(); ++i) {
+            final char c = path.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if ((c == '\'') || (c == '"')) {
+                quote = c;
+                continue;
+            }
+            if (c == '/') {
+                return i;
+            }
+        }
+        return quote == 0 ? path.length() : -1;
+    }
+
+    private static Step parseStep(final String step) {
+        if (".".equals(step)) {
+            return new Step(SELF, null, new Predicate[0]);
+        }
+        if ("text()".equals(step)) {
+            return new Step(TEXT, null, new Predicate[0]);
+        }
+        if (step.charAt(0) == '@') {
+            final String name = step.substring(1);
+            return isNCName(name) && !"xmlns".equals(name) ? new Step(ATTRIBUTE, name, new Predicate[0]) : null;
+        }
+        final int bracket = step.indexOf('[');
+        final String name = bracket < 0 ? step : step.substring(0, bracket);
+        if (!("*".equals(name) || isNCName(name))) {
+            return null;
+        }
+        final List<Predicate> predicates = new ArrayList<Predicate>();
+        int pos = bracket;
+        while ((pos >= 0) && (pos < step.length())) {
+            if (step.charAt(pos) != '[') {
+                return null;
+            }
+            final int close = findPredicateEnd(step, pos + 1);
+            if (close < 0) {
+                return null;
+            }
+            final Predicate predicate = parsePredicate(step.substring(pos + 1, close).trim());
+            if (predicate == null) {
+                return null;
+            }
+            predicates.add(predicate);
+            pos = close + 1;
+        }
+        return new Step(ELEMENT, name, predicates.toArray(new Predicate[predicates.size()]));
+    }
+
+    private static int findPredicateEnd(final String step, final int start) {
+        char quote = 0;
+        for (int i = start; i < step.length(); ++i) {
+            final char c = step.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if ((c == '\'') || (c == '"')) {
+                quote = c;
+            } else if (c == ']') {
+                return i;
+            } else if (c == '[') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static Predicate parsePredicate(final String predicate) {
+        if (predicate.isEmpty()) {
+            return null;
+        }
+        if (isDigits(predicate)) {
+            if (predicate.length() > 9) {
+                return null;
+            }
+            return new Predicate(Integer.parseInt(predicate), false, null, null);
+        }
+        final int eq = predicate.indexOf('=');
+        if ((eq < 0) || ((eq > 0) && (predicate.charAt(eq - 1) == '!'))) {
+            return null;
+        }
+        String name = predicate.substring(0, eq).trim();
+        final String literal = predicate.substring(eq + 1).trim();
+        if ((literal.length() < 2) || ((literal.charAt(0) != '\'') && (literal.charAt(0) != '"')) || (literal.charAt(literal.length() - 1) != literal.charAt(0))) {
+            return null;
+        }
+        final String value = literal.substring(1, literal.length() - 1);
+        if (value.indexOf(literal.charAt(0)) >= 0) {
+            return null;
+        }
+        final boolean onAttribute = name.startsWith("@");
+        if (onAttribute) {
+            name = name.substring(1);
+        }
+        if (!isNCName(name) || (onAttribute && "xmlns".equals(name))) {
+            return null;
+        }
+        return new Predicate(0, onAttribute, name, value);
+    }
+
+    private static boolean isDigits(final String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if ((s.charAt(i) < '0') || (s.charAt(i) > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNCName(final String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        final char first = name.charAt(0);
+        if (!(Character.isLetter(first) || (first == '_'))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); ++i) {
+            final char c = name.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || (c == '_') || (c == '-') || (c == '.'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object evaluate(final Object item, final QName returnType) throws XPathExpressionException {
+        if (!(item instanceof Node)) {
+            return fallback.evaluate(item, returnType);
+        }
+        try {
+            if (XPathConstants.NODESET.equals(returnType)) {
+                return new ArrayNodeList(select((Node) item));
+            }
+            if (XPathConstants.NODE.equals(returnType)) {
+                final List<Node> nodes = select((Node) item);
+                return nodes.isEmpty() ? null : nodes.get(0);
+            }
+            if (XPathConstants.STRING.equals(returnType)) {
+                final List<Node> nodes = select((Node) item);
+                return nodes.isEmpty() ? "" : stringValue(nodes.get(0));
+            }
+            if (XPathConstants.BOOLEAN.equals(returnType)) {
+                return !select((Node) item).isEmpty();
+            }
+        } catch (FallbackRequired e) {
+            // Evaluate with JAXP below.
+        }
+        return fallback.evaluate(item, returnType);
+    }
+
+    @Override
+    public String evaluate(final Object item) throws XPathExpressionException {
+        return (String) evaluate(item, XPathConstants.STRING);
+    }
+
+    @Override
+    public Object evaluate(final InputSource source, final QName returnType) throws XPathExpressionException {
+        return fallback.evaluate(source, returnType);
+    }
+
+    @Override
+    public String evaluate(final InputSource source) throws XPathExpressionException {
+        return fallback.evaluate(source);
+    }
+
+    private List<Node> select(final Node contextNode) throws FallbackRequired {
+        List<Node> current;
+        if (absolute) {
+            final Node root = findRoot(contextNode);
+            if (root.getNodeType() != Node.DOCUMENT_NODE) {
+                // Root of a detached tree. Leave that to the XPath engine.
+                throw FALLBACK_REQUIRED;
+            }
+            current = Collections.singletonList(root);
+        } else {
+            current = Collections.singletonList(contextNode);
+        }
+        for (Step step : steps) {
+            if (current.isEmpty()) {
+                return current;
+            }
+            if (step.kind == SELF) {
+                continue;
+            }
+            final List<Node> next = new ArrayList<Node>();
+            for (Node node : current) {
+                if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+                    // Attributes have no children in XPath.
+                    continue;
+                }
+                switch (step.kind) {
+                case ELEMENT:
+                    selectChildElements(node, step, next);
+                    break;
+                case ATTRIBUTE:
+                    selectAttributes(node, step.name, next);
+                    break;
+                default:
+                    selectTextNodes(node, next);
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static Node findRoot(final Node node) {
+        Node root = node.getNodeType() == Node.ATTRIBUTE_NODE ? ((Attr) node).getOwnerElement() : node;
+        if (root == null) {
+            return node;
+        }
+        for (Node parent = root.getParentNode(); parent != null; parent = parent.getParentNode()) {
+            root = parent;
+        }
+        return root;
+    }
+
+    private static void selectChildElements(final Node parent, final Step step, final List<Node> result) throws FallbackRequired {
+        final int start = result.size();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
+                throw FALLBACK_REQUIRED;
+            }
+            if (isMatchingElement(child, step.name)) {
+                result.add(child);
+            }
+        }
+        for (Predicate predicate : step.predicates) {
+            applyPredicate(predicate, result, start);
+        }
+    }
+
+    private static void applyPredicate(final Predicate predicate, final List<Node> result, final int start) {
+        if (predicate.name == null) {
+            // Positions start at 1, so [0] selects nothing.
+            final int index = (start + predicate.position) - 1;
+            final Node selected = (predicate.position > 0) && (index < result.size()) ? result.get(index) : null;
+            result.subList(start, result.size()).clear();
+            if (selected != null) {
+                result.add(selected);
+            }
+            return;
+        }
+        int write = start;
+        for (int read = start; read < result.size(); ++read) {
+            final Node candidate = result.get(read);
+            if (matchesEquality(candidate, predicate)) {
+                result.set(write++, candidate);
+            }
+        }
+        result.subList(write, result.size()).clear();
+    }
+
+    private static boolean matchesEquality(final Node element, final Predicate predicate) {
+        if (predicate.onAttribute) {
+            final List<Node> attributes = new ArrayList<Node>(1);
+            selectAttributes(element, predicate.name, attributes);
+            for (Node attr : attributes) {
+                if (predicate.value.equals(attr.getNodeValue())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isMatchingElement(child, predicate.name) && predicate.value.equals(child.getTextContent())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMatchingElement(final Node node, final String name) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return false;
+        }
+        if ("*".equals(name)) {
+            return true;
+        }
+        return (node.getNamespaceURI() == null) && name.equals(localName(node));
+    }
+
+    private static String localName(final Node node) {
+        final String localName = node.getLocalName();
+        if (localName != null) {
+            return localName;
+        }
+        final String nodeName = node.getNodeName();
+        final int colon = nodeName.indexOf(':');
+        return colon < 0 ? nodeName : nodeName.substring(colon + 1);
+    }
+
+    /**
+     * Without namespace awareness, prefixed attributes match by their local part like in XPath, so
+     * there may be more than one.
+     */
+    private static void selectAttributes(final Node node, final String name, final List<Node> result) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+        final NamedNodeMap attributes = node.getAttributes();
+        for (int i = 0; i < attributes.getLength(); ++i) {
+            final Attr attr = (Attr) attributes.item(i);
+            final String nodeName = attr.getNodeName();
+            if ("xmlns".equals(nodeName) || nodeName.startsWith("xmlns:")) {
+                continue;
+            }
+            if ((attr.getNamespaceURI() == null) && name.equals(localName(attr))) {
+                result.add(attr);
+            }
+        }
+    }
+
+    private static void selectTextNodes(final Node parent, final List<Node> result) throws FallbackRequired {
+        boolean previousWasText = false;
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            final short type = child.getNodeType();
+            if (type == Node.ENTITY_REFERENCE_NODE) {
+                throw FALLBACK_REQUIRED;
+            }
+            final boolean isText = (type == Node.TEXT_NODE) || (type == Node.CDATA_SECTION_NODE);
+            if (isText && previousWasText) {
+                // XPath sees adjacent text nodes as one node.
+                throw FALLBACK_REQUIRED;
+            }
+            if (isText) {
+                result.add(child);
+            }
+            previousWasText = isText;
+        }
+    }
+
+    private static String stringValue(final Node node) {
+        if (node.getNodeType() == Node.DOCUMENT_NODE) {
+            final Node documentElement = ((Document) node).getDocumentElement();
+            return documentElement == null ? "" : documentElement.getTextContent();
+        }
+        return node.getTextContent();
+    }
+}
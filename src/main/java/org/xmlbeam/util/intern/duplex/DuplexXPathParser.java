@@ -16,24 +16,79 @@
 package org.xmlbeam.util.intern.duplex;
 
 import java.util.Map;
+import java.util.TreeMap;
 
 import java.io.StringReader;
 
 import org.xmlbeam.exceptions.XBException;
+import org.xmlbeam.util.intern.LRUCache;
 
 /**
  * @author sven
  */
 public class DuplexXPathParser {
 
+    /**
+     * Parsed expressions shared by all parsers. Keys contain a copy of the namespace mapping the
+     * expression was parsed with.
+     */
+    private static final LRUCache<ExpressionKey, DuplexExpression> EXPRESSION_CACHE = new LRUCache<ExpressionKey, DuplexExpression>(1024);
+
+    private static final class ExpressionKey {
+        private final String path;
+        private final Map<String, String> mapping;
+        private final int hashCode;
+
+        ExpressionKey(final String path, final Map<String, String> mapping) {
+            this.path = path;
+            this.mapping = mapping;
+            this.hashCode = (31 * path.hashCode()) + (mapping == null ? 0 : mapping.hashCode());
+        }
+
+        ExpressionKey snapshot() {
+            return mapping == null ? this : new ExpressionKey(path, new TreeMap<String, String>(mapping));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof ExpressionKey)) {
+                return false;
+            }
+            final ExpressionKey other = (ExpressionKey) o;
+            return (hashCode == other.hashCode) && path.equals(other.path) && (mapping == null ? other.mapping == null : mapping.equals(other.mapping));
+        }
+    }
+
     private final Map<String, String> userDefinedMapping;
 
     /**
+     * Parse an expression or take it from the cache. Expressions using variables get a variable
+     * resolver set later, so they are parsed again each time.
+     *
      * @param path
      * @return DuplexExpression
      * @throws XBPathParsingException
      */
     public DuplexExpression compile(final CharSequence path) throws XBPathParsingException {
+        final ExpressionKey key = new ExpressionKey(path.toString(), userDefinedMapping);
+        final DuplexExpression cached = EXPRESSION_CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final ExpressionKey snapshot = key.snapshot();
+        final DuplexExpression expression = parse(path, snapshot.mapping);
+        if (expression.isUsingVariables()) {
+            return expression;
+        }
+        return EXPRESSION_CACHE.put(snapshot, expression);
+    }
+
+    private static DuplexExpression parse(final CharSequence path, final Map<String, String> userDefinedMapping) throws XBPathParsingException {
         final XParser parser = new XParser(new StringReader(path.toString()));
         try {
             SimpleNode node = parser.START();
@@ -18,12 +18,20 @@ package org.xmlbeam.tests.autovalues;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Iterator;
+import java.util.Map;
+
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xmlbeam.XBProjector;
 import org.xmlbeam.XBProjector.Flags;
+import org.xmlbeam.annotation.XBAuto;
+import org.xmlbeam.annotation.XBWrite;
 import org.xmlbeam.dom.DOMAccess;
 import org.xmlbeam.testutils.DOMDiagnoseHelper;
 import org.xmlbeam.types.XBAutoMap;
@@ -57,4 +65,85 @@ public class TestAutoMaps {
         assertTrue(da.getDOMNode() == da.getDOMOwnerDocument());
         assertNotNull(da.getDOMBaseElement());
     }
+
+    @Test
+    public void testRepeatedAccessWithDifferentTypes() {
+        XBAutoMap<String> map = projector.onXMLString("<root><value>42</value></root>").createMapOf(String.class);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("42", map.get("/root/value"));
+            assertEquals(Integer.valueOf(42), map.get("/root/value", Integer.class));
+        }
+        map.put("/root/value", "43");
+        assertEquals("43", map.get("/root/value"));
+        assertEquals(Integer.valueOf(43), map.get("/root/value", Integer.class));
+        assertEquals("43", map.remove("/root/value"));
+        assertEquals(null, map.get("/root/value"));
+    }
+
+    @Test
+    public void testEntrySetFollowsModifications() {
+        XBAutoMap<String> map = projector.onXMLString("<root><a>1</a><b>2</b></root>").createMapOf(String.class);
+        assertEquals(2, map.size());
+        assertTrue(map.entrySet() == map.entrySet());
+        map.put("/root/c", "3");
+        assertEquals(3, map.size());
+        map.getList("/root/d", String.class).add("4");
+        assertEquals(4, map.size());
+        map.remove("/root/a");
+        assertEquals(3, map.size());
+        assertFalse(map.containsValue("1"));
+        assertTrue(map.containsValue("4"));
+    }
+
+    @Test
+    public void testRemoveThroughViews() {
+        XBAutoMap<String> map = projector.onXMLString("<root><a>1</a><b>2</b><c>3</c><d>4</d></root>").createMapOf(String.class);
+        assertEquals(4, map.size());
+        assertTrue(map.keySet().remove("./root/a"));
+        assertNull(map.get("/root/a"));
+        assertTrue(map.values().remove("2"));
+        assertNull(map.get("/root/b"));
+        for (Iterator<Map.Entry<String, String>> i = map.entrySet().iterator(); i.hasNext();) {
+            if ("3".equals(i.next().getValue())) {
+                i.remove();
+            }
+        }
+        assertNull(map.get("/root/c"));
+        assertEquals("4", map.get("/root/d"));
+        DOMDiagnoseHelper.assertXMLStringsEquals("<root><d>4</d></root>", ((DOMAccess) map).asString());
+    }
+
+    @Test
+    public void testEntriesAfterDirectDOMChange() {
+        XBAutoMap<String> map = projector.onXMLString("<root><a>1</a></root>").createMapOf(String.class);
+        assertEquals(1, map.size());
+        final Document document = ((DOMAccess) map).getDOMOwnerDocument();
+        final Element b = document.createElement("b");
+        b.setTextContent("2");
+        document.getDocumentElement().appendChild(b);
+        projector.notifyDOMChanged(b);
+        assertEquals(2, map.size());
+        assertTrue(map.containsValue("2"));
+    }
+
+    public interface MapHolder {
+        @XBAuto("/root")
+        XBAutoMap<String> map();
+
+        @XBWrite("/root/value")
+        MapHolder setValue(String value);
+    }
+
+    @Test
+    public void testChangesAreSeenOnlyOnSameDocument() {
+        MapHolder first = projector.projectXMLString("<root><value>a</value></root>", MapHolder.class);
+        MapHolder second = projector.projectXMLString("<root><value>b</value></root>", MapHolder.class);
+        XBAutoMap<String> firstMap = first.map();
+        XBAutoMap<String> secondMap = second.map();
+        assertEquals(1, firstMap.size());
+        assertEquals(1, secondMap.size());
+        first.setValue("c");
+        assertEquals("c", firstMap.get("value"));
+        assertEquals("b", secondMap.get("value"));
+    }
 }
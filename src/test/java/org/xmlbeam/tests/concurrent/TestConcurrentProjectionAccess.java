@@ -55,7 +55,16 @@ public class TestConcurrentProjectionAccess {
 
     @Test
     public void testConcurrentProjectionAccess() throws InterruptedException {
-        final Projection projection = new XBProjector(Flags.SYNCHRONIZE_ON_DOCUMENTS, Flags.TO_STRING_RENDERS_XML).projectEmptyDocument(Projection.class);
+        runConcurrentAccess(new XBProjector(Flags.SYNCHRONIZE_ON_DOCUMENTS, Flags.TO_STRING_RENDERS_XML));
+    }
+
+    @Test
+    public void testConcurrentProjectionAccessWithReadWriteLock() throws InterruptedException {
+        runConcurrentAccess(new XBProjector(Flags.READ_WRITE_LOCK_ON_DOCUMENTS, Flags.TO_STRING_RENDERS_XML));
+    }
+
+    private void runConcurrentAccess(final XBProjector projector) throws InterruptedException {
+        final Projection projection = projector.projectEmptyDocument(Projection.class);
 // final Projection projection = new
 // XBProjector(Flags.TO_STRING_RENDERS_XML).projectEmptyDocument(Projection.class);
         final Projection b = projection.setSingleB("Huhu").getSingleB();
@@ -72,6 +81,7 @@ public class TestConcurrentProjectionAccess {
                 @Override
                 public void run() {
                     projection.setB(t, "Thread " + t);
+                    assertEquals("Thread " + t, projection.getB(t));
                 }
             });
         }
@@ -0,0 +1,133 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.XBProjector.Flags;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.annotation.XBWrite;
+
+/**
+ * Lock free reads with variables bound to method parameters.
+ */
+@SuppressWarnings("javadoc")
+public class TestConcurrentReadOnlyAccess {
+
+    private final static int count = 50;
+
+    public interface Projection {
+
+        @XBRead("/root/value[@id=$PARAM0]")
+        String getValue(String id);
+
+        @XBWrite("/root/value[@id=$PARAM0]")
+        Projection setValue(String id, String value);
+
+        @XBRead("sum(/root/value[@id >= 0])")
+        int getSum();
+    }
+
+    @Test
+    public void testConcurrentReadsThroughOneCachedContext() throws InterruptedException {
+        final XBProjector projector = new XBProjector(Flags.READ_ONLY_CONCURRENT);
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new LinkedList<Thread>();
+        for (int i = 0; i < count; ++i) {
+            final int expected = i * 10;
+            // All projections share the compiled context of getSum(), which is no simple path.
+            final Projection projection = projector.projectXMLString("<root><value id=\"1\">" + (expected - 1) + "</value><value id=\"2\">1</value></root>", Projection.class);
+            assertEquals(expected, projection.getSum());
+            threads.add(new Thread() {
+                {
+                    setDaemon(true);
+                }
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; ++j) {
+                        if (expected != projection.getSum()) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testConcurrentReadsWithVariables() throws InterruptedException {
+        StringBuilder xml = new StringBuilder("<root>");
+        for (int i = 0; i < count; ++i) {
+            xml.append("<value id=\"").append(i).append("\">").append(i).append("</value>");
+        }
+        final Projection projection = new XBProjector(Flags.READ_ONLY_CONCURRENT).projectXMLString(xml.append("</root>").toString(), Projection.class);
+        // Touch the whole document once, so no node expansion happens concurrently.
+        for (int i = 0; i < count; ++i) {
+            assertEquals(Integer.toString(i), projection.getValue(Integer.toString(i)));
+        }
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new LinkedList<Thread>();
+        for (int i = 0; i < count; ++i) {
+            final String id = Integer.toString(i);
+            threads.add(new Thread() {
+                {
+                    setDaemon(true);
+                    start();
+                }
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; ++j) {
+                        if (!id.equals(projection.getValue(id))) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testWritesAreRejected() {
+        Projection projection = new XBProjector(Flags.READ_ONLY_CONCURRENT).projectEmptyDocument(Projection.class);
+        try {
+            projection.setValue("1", "foo");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("READ_ONLY_CONCURRENT"));
+            return;
+        }
+        throw new AssertionError("Write was not rejected");
+    }
+}
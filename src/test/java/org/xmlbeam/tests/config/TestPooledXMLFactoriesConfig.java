@@ -0,0 +1,51 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.config.PooledXMLFactoriesConfig;
+import org.xmlbeam.config.PooledXMLFactoriesConfig.Pool;
+
+@SuppressWarnings("javadoc")
+public class TestPooledXMLFactoriesConfig {
+
+    public interface Projection {
+        @XBRead("/root/value")
+        String getValue();
+    }
+
+    @Test
+    public void testFactoriesAreReused() {
+        PooledXMLFactoriesConfig config = new PooledXMLFactoriesConfig();
+        XBProjector projector = new XBProjector(config);
+        for (int i = 0; i < 3; ++i) {
+            Projection projection = projector.projectXMLString("<root><value>" + i + "</value></root>", Projection.class);
+            assertEquals(Integer.toString(i), projection.getValue());
+            assertTrue(projector.asString(projection).contains("<value>" + i + "</value>"));
+        }
+        assertEquals(1, config.getMisses(Pool.DOCUMENT_BUILDER));
+        assertTrue(config.getHits(Pool.DOCUMENT_BUILDER) >= 2);
+        assertEquals(1, config.getMisses(Pool.TRANSFORMER));
+        assertTrue(config.getHits(Pool.TRANSFORMER) >= 2);
+        assertEquals(1, config.getMisses(Pool.XPATH_FACTORY));
+        assertTrue(config.getHits(Pool.XPATH_FACTORY) >= 2);
+    }
+}
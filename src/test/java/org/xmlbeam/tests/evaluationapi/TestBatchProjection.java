@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.evaluationapi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.dom.DOMAccess;
+
+@SuppressWarnings("javadoc")
+public class TestBatchProjection {
+
+    public interface Item extends DOMAccess {
+        @XBRead("./@id")
+        String getID();
+    }
+
+    public interface Root {
+        @XBRead("/root/item")
+        List<Item> getItems();
+
+        @XBRead("/root/item")
+        Item[] getItemArray();
+    }
+
+    private final XBProjector projector = new XBProjector();
+
+    @Test
+    public void testProjectDOMNodes() {
+        Document document = projector.projectXMLString("<root><item id=\"a\"/><item id=\"b\"/><item id=\"c\"/></root>", DOMAccess.class).getDOMOwnerDocument();
+        NodeList nodes = document.getElementsByTagName("item");
+        List<Item> items = projector.projectDOMNodes(nodes, Item.class);
+        assertEquals(3, items.size());
+        for (int i = 0; i < nodes.getLength(); ++i) {
+            assertSame(nodes.item(i), items.get(i).getDOMNode());
+        }
+        assertEquals("b", items.get(1).getID());
+    }
+
+    @Test
+    public void testSubProjectionListsAndArrays() {
+        Root root = projector.projectXMLString("<root><item id=\"a\"/><item id=\"b\"/></root>", Root.class);
+        assertEquals("b", root.getItems().get(1).getID());
+        Item[] array = root.getItemArray();
+        assertEquals(2, array.length);
+        assertEquals("a", array[0].getID());
+    }
+
+    @Test
+    public void testLockedProjections() {
+        XBProjector lockingProjector = new XBProjector(XBProjector.Flags.READ_WRITE_LOCK_ON_DOCUMENTS);
+        Root root = lockingProjector.projectXMLString("<root><item id=\"a\"/><item id=\"b\"/></root>", Root.class);
+        assertEquals("a", root.getItems().get(0).getID());
+    }
+
+    @Test
+    public void testObjectMethodsOfListElements() {
+        XBProjector renderingProjector = new XBProjector(XBProjector.Flags.TO_STRING_RENDERS_XML);
+        List<Item> items = renderingProjector.projectXMLString("<root><item id=\"a\"/><item id=\"b\"/></root>", Root.class).getItems();
+        assertTrue(items.get(0).toString().contains("id=\"a\""));
+        assertEquals(items.get(1), items.get(1));
+        assertEquals("item", items.get(1).getDOMNode().getNodeName());
+    }
+}
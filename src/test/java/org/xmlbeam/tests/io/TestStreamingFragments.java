@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.exceptions.XBDocumentParsingException;
+import org.xmlbeam.io.FragmentIterable;
+
+/**
+ * Read large documents element by element.
+ */
+@SuppressWarnings("javadoc")
+public class TestStreamingFragments {
+
+    public interface Item {
+        @XBRead("@id")
+        String getID();
+
+        @XBRead("./title")
+        String getTitle();
+
+        @XBRead("./x:extra")
+        String getExtra();
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+        boolean closed = false;
+
+        TrackingInputStream(final String xml) throws IOException {
+            super(xml.getBytes("UTF-8"));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    private static final String XML = "<feed xmlns:x=\"urn:extra\"><meta><item id=\"ignored\"/></meta><item id=\"1\"><title>first</title><x:extra>e1</x:extra></item><other/><item id=\"2\"><title>second</title></item></feed>";
+
+    @Test
+    public void testReadFragments() throws Exception {
+        StringBuilder result = new StringBuilder();
+        for (Item item : new XBProjector().io().stream(new ByteArrayInputStream(XML.getBytes("UTF-8"))).readFragments("/feed/item", Item.class)) {
+            result.append(item.getID()).append(':').append(item.getTitle()).append(':').append(item.getExtra()).append(';');
+        }
+        assertEquals("1:first:e1;2:second:null;", result.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedPath() throws Exception {
+        new XBProjector().io().stream(new ByteArrayInputStream(XML.getBytes("UTF-8"))).readFragments("//item[1]", Item.class);
+    }
+
+    @Test
+    public void testStreamIsClosedAfterLastFragment() throws Exception {
+        TrackingInputStream is = new TrackingInputStream(XML);
+        Iterator<Item> iterator = new XBProjector().io().stream(is).readFragments("/feed/item", Item.class).iterator();
+        assertEquals("1", iterator.next().getID());
+        assertEquals("2", iterator.next().getID());
+        assertFalse(is.closed);
+        assertFalse(iterator.hasNext());
+        assertTrue(is.closed);
+    }
+
+    @Test
+    public void testStreamIsClosedWhenReadingStopsEarly() throws Exception {
+        TrackingInputStream is = new TrackingInputStream(XML);
+        FragmentIterable<Item> fragments = new XBProjector().io().stream(is).readFragments("/feed/item", Item.class);
+        Iterator<Item> iterator = fragments.iterator();
+        assertEquals("1", iterator.next().getID());
+        fragments.close();
+        assertTrue(is.closed);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testStreamIsClosedOnUnresolvedEntity() throws Exception {
+        TrackingInputStream is = new TrackingInputStream("<feed><item id=\"1\">&undeclared;</item></feed>");
+        Iterator<Item> iterator = new XBProjector().io().stream(is).readFragments("/feed/item", Item.class).iterator();
+        try {
+            iterator.next();
+            fail("Unresolved entity must not be skipped.");
+        } catch (XBDocumentParsingException e) {
+            assertTrue(is.closed);
+        }
+        assertFalse(iterator.hasNext());
+    }
+}
@@ -17,6 +17,7 @@ package org.xmlbeam.tests.mixins;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -72,6 +73,17 @@ public class TestMixins {
         assertEquals("12345", projection.toString());
     }
 
+    @Test
+    public void testMixinChangedAfterProjection() {
+        XBProjector projector = new XBProjector();
+        OverridingProjection projection = projector.projectEmptyDocument(OverridingProjection.class);
+        projector.mixins().addProjectionMixin(OverridingProjection.class, overridingMixin);
+        assertEquals("12345", projector.projectEmptyDocument(OverridingProjection.class).toString());
+        projector.mixins().removeProjectionMixin(OverridingProjection.class, MixinOverridingToString.class);
+        assertFalse("12345".equals(projector.projectEmptyDocument(OverridingProjection.class).toString()));
+        assertFalse("12345".equals(projection.toString()));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testCallWithoutMixin() {
         Mixin mixin = new XBProjector().projectEmptyDocument(Mixin.class);
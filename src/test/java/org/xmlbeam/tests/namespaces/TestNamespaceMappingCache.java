@@ -0,0 +1,89 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.namespaces;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBAuto;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.annotation.XBWrite;
+import org.xmlbeam.config.DefaultXMLFactoriesConfig;
+import org.xmlbeam.dom.DOMAccess;
+import org.xmlbeam.types.XBAutoMap;
+
+/**
+ * Namespace mappings are cached per document and dropped when the document changes.
+ */
+@SuppressWarnings("javadoc")
+public class TestNamespaceMappingCache {
+
+    public interface Projection extends DOMAccess {
+        @XBRead("/root/ns:value")
+        String getValue();
+
+        @XBWrite("/root/@xmlns:ns")
+        Projection setNamespace(String uri);
+
+        @XBRead("/root/value")
+        String getPlainValue();
+
+        @XBAuto("/root")
+        XBAutoMap<String> entries();
+    }
+
+    private final DefaultXMLFactoriesConfig config = new DefaultXMLFactoriesConfig();
+    private final XBProjector projector = new XBProjector(config);
+
+    @Test
+    public void testMappingIsRefreshedAfterDirectDOMChange() {
+        Projection projection = projector.projectXMLString("<root><value>bar</value></root>", Projection.class);
+        assertEquals("bar", projection.getPlainValue());
+        Document document = projection.getDOMOwnerDocument();
+        Element root = document.getDocumentElement();
+        root.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:ns", "urn:test");
+        Element value = document.createElementNS("urn:test", "ns:value");
+        value.setTextContent("foo");
+        root.appendChild(value);
+        config.invalidateNamespaceMapping(document);
+        assertEquals("foo", projection.getValue());
+    }
+
+    @Test
+    public void testMappingIsRefreshedAfterProjectionWrite() {
+        Projection projection = projector.projectXMLString("<root><value>bar</value></root>", Projection.class);
+        assertEquals("bar", projection.getPlainValue());
+        projection.setNamespace("urn:test");
+        Element value = projection.getDOMOwnerDocument().createElementNS("urn:test", "ns:value");
+        value.setTextContent("foo");
+        projection.getDOMOwnerDocument().getDocumentElement().appendChild(value);
+        assertEquals("foo", projection.getValue());
+    }
+
+    @Test
+    public void testMappingIsRefreshedAfterAutoMapWrite() {
+        Projection projection = projector.projectXMLString("<root><value>bar</value></root>", Projection.class);
+        assertEquals("bar", projection.getPlainValue());
+        projection.entries().put("@xmlns:ns", "urn:test");
+        Element value = projection.getDOMOwnerDocument().createElementNS("urn:test", "ns:value");
+        value.setTextContent("foo");
+        projection.getDOMOwnerDocument().getDocumentElement().appendChild(value);
+        assertEquals("foo", projection.getValue());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.namespaces;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+
+/**
+ * Compiled expressions are shared between projections of one projector. Make sure documents with
+ * different namespace declarations do not get each others expressions.
+ */
+@SuppressWarnings("javadoc")
+public class TestSharedExpressionsOnDifferentNamespaces {
+
+    public interface Item {
+        @XBRead("./@id")
+        String getID();
+    }
+
+    public interface Root {
+        @XBRead("/root/ns:value")
+        String getValue();
+
+        @XBRead("/root/item")
+        List<Item> getItems();
+    }
+
+    private final XBProjector projector = new XBProjector();
+
+    @Test
+    public void testSamePrefixDifferentURIs() {
+        Root first = projector.projectXMLString("<root xmlns:ns=\"urn:first\"><ns:value>first</ns:value></root>", Root.class);
+        Root second = projector.projectXMLString("<root xmlns:ns=\"urn:second\"><ns:value>second</ns:value></root>", Root.class);
+        assertEquals("first", first.getValue());
+        assertEquals("second", second.getValue());
+        assertEquals("first", first.getValue());
+    }
+
+    @Test
+    public void testSubProjectionsShareExpressions() {
+        Root root = projector.projectXMLString("<root><item id=\"a\"/><item id=\"b\"/><item id=\"c\"/></root>", Root.class);
+        StringBuilder ids = new StringBuilder();
+        for (Item item : root.getItems()) {
+            ids.append(item.getID());
+        }
+        assertEquals("abc", ids.toString());
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.projectionvalidation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class TestProjectionProcessor {
+
+    private static final String VALID_PROJECTION = "package p;\n" //
+            + "import java.util.*;\n" //
+            + "import org.xmlbeam.annotation.*;\n" //
+            + "public interface Valid extends Base {\n" //
+            + "    interface Inner { @XBRead(\"@id\") String getID(); }\n" //
+            + "    @XBRead(\"/root/@name\") String getName() throws java.io.IOException;\n" //
+            + "    @XBRead(\"/root/item\") List<Inner> getItems();\n" //
+            + "    @XBRead(\"/root/map\") Map<String, ? extends List<? super Integer>> getMap();\n" //
+            + "    @XBRead(\"/root/value\") int[][] getValues();\n" //
+            + "    @XBRead(\"/root/{0}\") <T> T get(String name, Class<T> type);\n" //
+            + "    @XBWrite(\"/root/value\") Valid setValues(@XBValue List<Integer>[] values, String... more);\n" //
+            + "    @XBDocURL(\"resource://doc.xml\") @XBRead(\"/root/@url\") String getExternal();\n" //
+            + "    @XBUpdate(\"/root/@name\") void setName(String name);\n" //
+            + "}\n";
+
+    private static final String BASE_PROJECTION = "package p;\n" //
+            + "import org.xmlbeam.annotation.*;\n" //
+            + "public interface Base {\n" //
+            + "    @XBDelete(\"/root/item\") int deleteItems();\n" //
+            + "    @XBAuto(\"/root/auto\") java.util.Map<String, String> auto();\n" //
+            + "}\n";
+
+    private File outputDirectory;
+
+    @Before
+    public void createOutputDirectory() throws IOException {
+        outputDirectory = File.createTempFile("processor", "");
+        assertTrue(outputDirectory.delete());
+        assertTrue(outputDirectory.mkdir());
+    }
+
+    @After
+    public void deleteOutputDirectory() {
+        delete(outputDirectory);
+    }
+
+    @Test
+    public void testValidInterfacesAreAccepted() throws Exception {
+        final List<String> errors = compile(outputDirectory, VALID_PROJECTION, BASE_PROJECTION);
+        assertEquals(new ArrayList<String>(), errors);
+        assertTrue(new File(outputDirectory, "p/Valid.class").exists());
+        // The processor is a checker only and does not write any resources.
+        assertFalse(new File(outputDirectory, "META-INF").exists());
+    }
+
+    @Test
+    public void testInvalidInterfaceIsRejected() throws Exception {
+        final List<String> errors = compile(outputDirectory, "package p;\n" //
+                + "public interface Invalid {\n" //
+                + "    @org.xmlbeam.annotation.XBRead(\"/root\") void get();\n" //
+                + "    @org.xmlbeam.annotation.XBWrite(\"/root\") void set();\n" //
+                + "}\n");
+        assertEquals(Arrays.asList("Method has @XBRead annotation, but has no return type.", "Method has @XBWrite annotation, but has no parameter."), errors);
+    }
+
+    @Test
+    public void testInvalidXPathIsRejected() throws Exception {
+        final List<String> errors = compile(outputDirectory, "package p;\n" //
+                + "public interface InvalidXPath {\n" //
+                + "    @org.xmlbeam.annotation.XBRead(\"/root[\") String get();\n" //
+                + "}\n");
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).startsWith("Invalid XPath '/root['"));
+    }
+
+    private static List<String> compile(final File outputDirectory, final String... sources) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null);
+        final List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+        for (final String source : sources) {
+            final String name = source.replaceFirst("(?s).*public interface (\\w+).*", "$1");
+            units.add(new SimpleJavaFileObject(URI.create("string:///p/" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            });
+        }
+        final List<String> options = new ArrayList<String>(Arrays.asList("-d", outputDirectory.getPath(), "-classpath", System.getProperty("java.class.path")));
+        options.addAll(Arrays.asList("-processor", "org.xmlbeam.processor.ProjectionProcessor"));
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        compiler.getTask(null, null, diagnostics, options, null, units).call();
+        final List<String> errors = new ArrayList<String>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ENGLISH));
+            }
+        }
+        Collections.sort(errors);
+        return errors;
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
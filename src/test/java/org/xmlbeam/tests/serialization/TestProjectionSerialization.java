@@ -26,6 +26,7 @@ import java.io.ObjectOutputStream;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.xmlbeam.XBProjector;
+import org.xmlbeam.XBProjector.Flags;
 
 /**
  * Tests to ensure that projections can be serialized.
@@ -52,6 +53,14 @@ public class TestProjectionSerialization {
         assertNotSame(projection, squishedProjection);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSynchronizedProjectionSerialization() throws IOException, ClassNotFoundException {
+        SerializeMe projection = new XBProjector(Flags.SYNCHRONIZE_ON_DOCUMENTS).projectEmptyDocument(SerializeMe.class);
+        SerializeMe squishedProjection = cloneBySerialization(projection);
+        assertNotSame(projection, squishedProjection);
+    }
+
     @SuppressWarnings("unchecked")
     private <T> T cloneBySerialization(T object, Class<T>... clazz) throws IOException, ClassNotFoundException {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -16,6 +16,7 @@
 package org.xmlbeam.tests.types;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 import org.xmlbeam.XBProjector;
@@ -38,9 +39,20 @@ public class TestCustomTypeConverter {
         }
     }
 
+    public static class Color {
+        private final String name;
+
+        private Color(final String name) {
+            this.name = name;
+        }
+    }
+
     public interface Projection {
         @XBRead("/foo")
         long getData();
+
+        @XBRead("/foo")
+        Color getColor();
     }
 
     @Test
@@ -51,4 +63,24 @@ public class TestCustomTypeConverter {
         Projection projection = projector.projectXMLString("<foo>CAFEBABE</foo>", Projection.class);
         assertEquals(3405691582L, projection.getData());
     }
+
+    @Test
+    public void testConversionRegisteredAfterFirstProjection() {
+        XBProjector projector = new XBProjector();
+        Projection projection = projector.projectXMLString("<foo>red</foo>", Projection.class);
+        try {
+            projection.getColor();
+            fail("Color should not be convertable yet");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        projector.config().getTypeConverterAs(DefaultTypeConverter.class).setConversionForType(Color.class, new Conversion<Color>(null) {
+            @Override
+            public Color convert(final String data) {
+                return new Color(data);
+            }
+        });
+        assertEquals("red", projection.getColor().name);
+        assertEquals("red", projector.projectXMLString("<foo>red</foo>", Projection.class).getColor().name);
+    }
 }
@@ -16,16 +16,25 @@
 package org.xmlbeam.tests.types;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import java.math.BigDecimal;
 
 import org.junit.Test;
 import org.xmlbeam.types.DefaultTypeConverter;
+import org.xmlbeam.types.DefaultTypeConverter.Conversion;
 import org.xmlbeam.types.TypeConverter;
 
 /**
@@ -157,4 +166,149 @@ public class TestDefaultTypeConverter {
         assertEquals(new BigDecimal("123456"), new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT")).convertTo(BigDecimal.class, "123,456", ""));
     }
 
+    public interface NotConvertable {
+    }
+
+    public static class StringConstructed {
+        final String value;
+
+        public StringConstructed(final String value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void ensureMissingConversionIsRemembered() {
+        DefaultTypeConverter typeConverter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        assertFalse(typeConverter.isConvertable(NotConvertable.class));
+        assertFalse(typeConverter.isConvertable(NotConvertable.class));
+        typeConverter.setConversionForType(NotConvertable.class, new Conversion<NotConvertable>(null) {
+            @Override
+            public NotConvertable convert(final String data) {
+                return null;
+            }
+        });
+        assertTrue(typeConverter.isConvertable(NotConvertable.class));
+        typeConverter.setConversionForType(NotConvertable.class, null);
+        assertFalse(typeConverter.isConvertable(NotConvertable.class));
+    }
+
+    @Test
+    public void ensureConcurrentLookups() throws Exception {
+        final DefaultTypeConverter typeConverter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 64; ++i) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int j = 0; j < 100; ++j) {
+                            if (typeConverter.isConvertable(NotConvertable.class) || !typeConverter.isConvertable(StringConstructed.class)) {
+                                return false;
+                            }
+                            if (!"x".equals(typeConverter.convertTo(StringConstructed.class, "x").value)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void ensureCachedFormatsFollowLocaleAndTimeZone() {
+        DefaultTypeConverter typeConverter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        assertEquals("1,234.5", typeConverter.render(Double.class, 1234.5D, "#,##0.0"));
+        assertEquals("19700101 00", typeConverter.render(Date.class, new Date(0), "yyyyMMdd HH"));
+        typeConverter.setLocale(Locale.GERMANY).setTimeZone(TimeZone.getTimeZone("GMT+02:00"));
+        assertEquals("1.234,5", typeConverter.render(Double.class, 1234.5D, "#,##0.0"));
+        assertEquals("19700101 02", typeConverter.render(Date.class, new Date(0), "yyyyMMdd HH"));
+    }
+
+    @Test
+    public void ensureJavaTimeConversions() throws Exception {
+        // Tests are compiled for Java 6, so java.time is only used reflectively here.
+        final Class<?> localDate = javaTimeClass("java.time.LocalDate");
+        assumeTrue(localDate != null);
+        final Class<?> instant = javaTimeClass("java.time.Instant");
+        final Class<?> offsetDateTime = javaTimeClass("java.time.OffsetDateTime");
+        DefaultTypeConverter typeConverter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        assertTrue(typeConverter.isConvertable(localDate));
+        assertEquals("1987-06-05", typeConverter.convertTo(localDate, "19870605", "yyyyMMdd").toString());
+        assertEquals("1987-06-05", typeConverter.convertTo(localDate, "1987-06-05").toString());
+        Object parsedInstant = typeConverter.convertTo(instant, "19870605 00:00", "yyyyMMdd HH:mm");
+        assertEquals("1987-06-05T00:00:00Z", parsedInstant.toString());
+        assertEquals("1987/06/05", renderRaw(typeConverter, instant, parsedInstant, "yyyy/MM/dd"));
+        assertEquals("1987-06-05T10:11+02:00", typeConverter.convertTo(offsetDateTime, "1987-06-05 10:11 +02:00", "yyyy-MM-dd HH:mm XXX").toString());
+    }
+
+    @Test
+    public void ensureZonedTypesKeepTheirZoneWithPattern() throws Exception {
+        final Class<?> zonedDateTime = javaTimeClass("java.time.ZonedDateTime");
+        assumeTrue(zonedDateTime != null);
+        final Class<?> offsetDateTime = javaTimeClass("java.time.OffsetDateTime");
+        DefaultTypeConverter typeConverter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+
+        Object zoned = zonedDateTime.getMethod("parse", CharSequence.class).invoke(null, "1987-06-05T10:00+02:00[Europe/Berlin]");
+        String renderedZoned = renderRaw(typeConverter, zonedDateTime, zoned, "yyyy-MM-dd HH:mm VV");
+        assertEquals("1987-06-05 10:00 Europe/Berlin", renderedZoned);
+        assertEquals(zoned, typeConverter.convertTo(zonedDateTime, renderedZoned, "yyyy-MM-dd HH:mm VV"));
+
+        Object offset = offsetDateTime.getMethod("parse", CharSequence.class).invoke(null, "1987-06-05T10:00+02:00");
+        String renderedOffset = renderRaw(typeConverter, offsetDateTime, offset, "yyyy-MM-dd HH:mm XXX");
+        assertEquals("1987-06-05 10:00 +02:00", renderedOffset);
+        assertEquals(offset, typeConverter.convertTo(offsetDateTime, renderedOffset, "yyyy-MM-dd HH:mm XXX"));
+
+        Object instant = javaTimeClass("java.time.Instant").getMethod("from", javaTimeClass("java.time.temporal.TemporalAccessor")).invoke(null, zoned);
+        assertEquals("1987-06-05 08:00", renderRaw(typeConverter, instant.getClass(), instant, "yyyy-MM-dd HH:mm"));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static String renderRaw(final DefaultTypeConverter typeConverter, final Class type, final Object data, final String pattern) {
+        return typeConverter.render(type, data, pattern);
+    }
+
+    private static Class<?> javaTimeClass(final String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Test
+    public void ensureTextConversionMatchesStringConversion() {
+        DefaultTypeConverter typeConverter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        String[] values = { "0", " 12 ", "-5", "+7", "2147483647", "-2147483648", "9223372036854775807", "127", "-129", "TRUE", " true ", "truee" };
+        for (Class<?> type : new Class<?>[] { Integer.TYPE, Integer.class, Long.TYPE, Long.class, Short.TYPE, Byte.TYPE, Boolean.TYPE, Boolean.class }) {
+            for (String value : values) {
+                assertEquals(type + " '" + value + "'", convertOrFail(typeConverter, type, value), textOrFail(typeConverter, type, new StringBuilder(value)));
+            }
+        }
+    }
+
+    private static Object convertOrFail(final DefaultTypeConverter typeConverter, final Class<?> type, final String value) {
+        try {
+            return typeConverter.convertTo(type, value);
+        } catch (NumberFormatException e) {
+            return NumberFormatException.class;
+        }
+    }
+
+    private static Object textOrFail(final DefaultTypeConverter typeConverter, final Class<?> type, final CharSequence value) {
+        try {
+            return typeConverter.convertText(type, value, null);
+        } catch (NumberFormatException e) {
+            return NumberFormatException.class;
+        }
+    }
+
 }
@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.XBProjector.Flags;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.annotation.XBWrite;
+
+/**
+ * Iterable and Iterator return types convert values on access.
+ */
+@SuppressWarnings("javadoc")
+public class TestLazyIterableReturnTypes {
+
+    public interface Projection {
+        @XBRead("/root/value")
+        Iterable<Integer> getValues();
+
+        @XBRead("/root/value")
+        Iterator<Integer> iterateValues();
+
+        @XBWrite("/root/value")
+        Projection setValues(List<Integer> values);
+    }
+
+    private final Projection projection = new XBProjector().projectXMLString("<root><value>1</value><value>2</value><value>no number</value></root>", Projection.class);
+
+    @Test
+    public void testIterableConvertsOnAccess() {
+        int sum = 0;
+        for (Integer i : projection.getValues()) {
+            if (i == 2) {
+                break;
+            }
+            sum += i;
+        }
+        assertEquals(1, sum);
+    }
+
+    @Test
+    public void testIterator() {
+        Iterator<Integer> iterator = projection.iterateValues();
+        assertTrue(iterator.hasNext());
+        assertEquals(Integer.valueOf(1), iterator.next());
+        assertEquals(Integer.valueOf(2), iterator.next());
+        assertTrue(iterator.hasNext());
+        try {
+            iterator.next();
+        } catch (NumberFormatException e) {
+            return;
+        }
+        throw new AssertionError("Value should not be convertable");
+    }
+
+    @Test
+    public void testLockedProjectionsReadBeforeLockIsReleased() {
+        for (Flags flag : new Flags[] { Flags.SYNCHRONIZE_ON_DOCUMENTS, Flags.READ_WRITE_LOCK_ON_DOCUMENTS }) {
+            Projection locked = new XBProjector(flag).projectXMLString("<root><value>1</value><value>2</value></root>", Projection.class);
+            Iterator<Integer> iterator = locked.iterateValues();
+            Iterable<Integer> iterable = locked.getValues();
+            locked.setValues(Arrays.asList(7));
+            assertEquals(Integer.valueOf(1), iterator.next());
+            assertEquals(Integer.valueOf(2), iterator.next());
+            int sum = 0;
+            for (Integer i : iterable) {
+                sum += i;
+            }
+            assertEquals(3, sum);
+            assertEquals(Integer.valueOf(7), locked.iterateValues().next());
+        }
+    }
+}
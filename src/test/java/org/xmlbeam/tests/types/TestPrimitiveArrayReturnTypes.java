@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.types;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.xmlbeam.XBProjector;
+import org.xmlbeam.annotation.XBRead;
+import org.xmlbeam.types.DefaultTypeConverter;
+import org.xmlbeam.types.DefaultTypeConverter.Conversion;
+import org.xmlbeam.util.intern.ReflectionHelper;
+
+/**
+ * Primitive arrays are filled without boxing the values.
+ */
+@SuppressWarnings("javadoc")
+public class TestPrimitiveArrayReturnTypes {
+
+    public interface Projection {
+        @XBRead("/root/value")
+        int[] getInts();
+
+        @XBRead("/root/value")
+        long[] getLongs();
+
+        @XBRead("/root/value")
+        double[] getDoubles();
+
+        @XBRead("/root/value")
+        short[] getShorts();
+
+        @XBRead("/root/price using $###")
+        int[] getPrices();
+
+        @XBRead("/root/missing")
+        int[] getNothing();
+
+        @XBRead("/root/value")
+        Integer[] getIntegers();
+
+        @XBRead("/root/value")
+        List<Integer> getIntegerList();
+    }
+
+    private static final String XML = "<root><value>1</value><value> 2 </value><value>-3</value><price>$1000</price><price>$20</price></root>";
+
+    private final Projection projection = new XBProjector().projectXMLString(XML, Projection.class);
+
+    @Test
+    public void testPrimitiveArrays() {
+        assertArrayEquals(new int[] { 1, 2, -3 }, projection.getInts());
+        assertArrayEquals(new long[] { 1L, 2L, -3L }, projection.getLongs());
+        assertArrayEquals(new double[] { 1D, 2D, -3D }, projection.getDoubles(), 0D);
+        assertArrayEquals(new short[] { 1, 2, -3 }, projection.getShorts());
+        assertEquals(0, projection.getNothing().length);
+    }
+
+    @Test
+    public void testEmptyElementsBecomeDefaultValue() {
+        final Projection withEmpty = new XBProjector().projectXMLString("<root><value>1</value><value/><value> </value></root>", Projection.class);
+        assertArrayEquals(new int[] { 1, 0, 0 }, withEmpty.getInts());
+        assertArrayEquals(new long[] { 1L, 0L, 0L }, withEmpty.getLongs());
+        assertArrayEquals(new double[] { 1D, 0D, 0D }, withEmpty.getDoubles(), 0D);
+        assertArrayEquals(new short[] { 1, 0, 0 }, withEmpty.getShorts());
+    }
+
+    @Test
+    public void testArraysStreamsAndListsAgree() throws Exception {
+        final Projection mixed = new XBProjector().projectXMLString("<root><value>1</value><value/><value> </value><value> 4<b>2</b></value><value><![CDATA[5]]></value></root>", Projection.class);
+        assertArrayEquals(new int[] { 1, 0, 0, 4, 5 }, mixed.getInts());
+        assertArrayEquals(new Integer[] { 1, null, null, 4, 5 }, mixed.getIntegers());
+        assertEquals(Arrays.asList(1, null, null, 4, 5), mixed.getIntegerList());
+        // An IntStream return type streams the int[] the projector reads.
+        final Object stream = ReflectionHelper.toPrimitiveStream(mixed.getInts());
+        assertArrayEquals(new int[] { 1, 0, 0, 4, 5 }, (int[]) Class.forName("java.util.stream.IntStream").getMethod("toArray").invoke(stream));
+    }
+
+    @Test
+    public void testFormatPattern() {
+        assertArrayEquals(new int[] { 1000, 20 }, projection.getPrices());
+    }
+
+    @Test
+    public void testCustomConversionIsUsed() {
+        final DefaultTypeConverter converter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        converter.setConversionForType(Integer.TYPE, new Conversion<Integer>(0) {
+            @Override
+            public Integer convert(final String data) {
+                return Integer.valueOf(data.trim()) * 10;
+            }
+        });
+        final XBProjector projector = new XBProjector();
+        projector.config().setTypeConverter(converter);
+        assertArrayEquals(new int[] { 10, 20, -30 }, projector.projectXMLString(XML, Projection.class).getInts());
+    }
+
+    @Test
+    public void testCustomConversionGetsUnchangedText() {
+        final DefaultTypeConverter converter = new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT"));
+        converter.setConversionForType(Integer.TYPE, new Conversion<Integer>(-1) {
+            @Override
+            public Integer convert(final String data) {
+                return data.length();
+            }
+        });
+        final XBProjector projector = new XBProjector();
+        projector.config().setTypeConverter(converter);
+        assertArrayEquals(new int[] { 1, 0, 3 }, projector.projectXMLString("<root><value>1</value><value/><value>   </value></root>", Projection.class).getInts());
+    }
+}
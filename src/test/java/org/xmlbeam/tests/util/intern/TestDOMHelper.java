@@ -15,7 +15,9 @@
  */
 package org.xmlbeam.tests.util.intern;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -23,6 +25,8 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Text;
 import org.xmlbeam.annotation.XBRead;
 import org.xmlbeam.dom.DOMAccess;
 import org.xmlbeam.util.intern.DOMHelper;
@@ -49,4 +53,16 @@ public class TestDOMHelper {
         assertFalse(DOMHelper.nodesAreEqual(document, null));
         assertFalse(DOMHelper.nodesAreEqual(null, document));
     }
+
+    @Test
+    public void directTextOfSingleTextChildIsNotCopied() {
+        Element element = document.createElement("value");
+        Text text = document.createTextNode("42");
+        element.appendChild(text);
+        assertSame(text.getNodeValue(), DOMHelper.directText(element));
+        element.appendChild(document.createElement("child")).appendChild(document.createTextNode("ignored"));
+        element.appendChild(document.createTextNode("3"));
+        assertEquals("423", DOMHelper.directTextContent(element));
+        assertEquals("", DOMHelper.directTextContent(document.createElement("empty")));
+    }
 }
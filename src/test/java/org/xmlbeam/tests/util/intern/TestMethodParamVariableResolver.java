@@ -0,0 +1,73 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.util.intern;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Test;
+import org.xmlbeam.types.DefaultTypeConverter;
+import org.xmlbeam.util.intern.MethodParamVariableResolver;
+import org.xmlbeam.util.intern.duplex.DuplexExpression;
+import org.xmlbeam.util.intern.duplex.DuplexXPathParser;
+
+@SuppressWarnings("javadoc")
+public class TestMethodParamVariableResolver {
+
+    public interface Projection {
+        String find(String name);
+    }
+
+    @Test
+    public void argumentsAreReleasedAfterInvocation() throws Exception {
+        final DuplexExpression expression = new DuplexXPathParser(Collections.<String, String> emptyMap()).compile("/root/item[@name=$PARAM0]");
+        final MethodParamVariableResolver resolver = new MethodParamVariableResolver(Projection.class.getMethod("find", String.class), new Object[] { "first" }, expression, new DefaultTypeConverter(Locale.US, TimeZone.getTimeZone("GMT")), null);
+        final QName param0 = new QName("PARAM0");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals("bound", executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    resolver.updateArgs(new Object[] { "bound" });
+                    try {
+                        return resolver.resolveVariable(param0);
+                    } finally {
+                        resolver.clearArgs();
+                    }
+                }
+            }).get());
+            resolver.updateArgs(new Object[] { "latest" });
+            resolver.clearArgs();
+            // The pooled thread holds no arguments anymore and sees the latest ones.
+            assertEquals("latest", executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return resolver.resolveVariable(param0);
+                }
+            }).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.xmlbeam.util.intern.duplex.DuplexExpression;
+import org.xmlbeam.util.intern.duplex.DuplexXPathParser;
+
+@SuppressWarnings("javadoc")
+public class TestDuplexExpressionCache {
+
+    @Test
+    public void testSameExpressionIsParsedOnce() {
+        final Map<String, String> mapping = Collections.singletonMap("a", "urn:a");
+        final DuplexExpression first = new DuplexXPathParser(mapping).compile("/cache/a:first");
+        final DuplexExpression second = new DuplexXPathParser(new TreeMap<String, String>(mapping)).compile("/cache/a:first");
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testDifferentMappingsDoNotShareExpressions() {
+        final DuplexExpression first = new DuplexXPathParser(Collections.singletonMap("a", "urn:first")).compile("/cache/a:second");
+        final DuplexExpression second = new DuplexXPathParser(Collections.singletonMap("a", "urn:second")).compile("/cache/a:second");
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testMappingChangesAreSeen() {
+        final Map<String, String> mapping = new TreeMap<String, String>();
+        final DuplexExpression first = new DuplexXPathParser(mapping).compile("/cache/third");
+        mapping.put("b", "urn:b");
+        final DuplexExpression second = new DuplexXPathParser(mapping).compile("/cache/third");
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testExpressionsWithVariablesAreNotShared() {
+        final DuplexExpression first = new DuplexXPathParser(Collections.<String, String> emptyMap()).compile("/cache/fourth[@id=$PARAM0]");
+        final DuplexExpression second = new DuplexXPathParser(Collections.<String, String> emptyMap()).compile("/cache/fourth[@id=$PARAM0]");
+        assertNotSame(first, second);
+        assertEquals(first.getExpressionAsStringWithoutFormatPatterns(), second.getExpressionAsStringWithoutFormatPatterns());
+    }
+}
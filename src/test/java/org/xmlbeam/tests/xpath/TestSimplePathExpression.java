@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2017 Sven Ewald
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.xmlbeam.tests.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xmlbeam.util.intern.SimplePathExpression;
+
+/**
+ * The DOM walk must select exactly what the XPath engine selects.
+ */
+@SuppressWarnings("javadoc")
+public class TestSimplePathExpression {
+
+    private static final String XML = "<root a='1' xmlns:x='urn:x'><item id='a'><name>first</name></item><item id='b' x:id='q'><name>second</name><name>third</name></item><x:item id='c'/><other>t1<![CDATA[t2]]></other><txt>only</txt>mixed</root>";
+
+    private static final String[] SIMPLE_PATHS = { "/", "/root", "/root/item", "/root/item[2]", "/root/item[0]", "/root/item[3]", "/root/item[@id='b']", "/root/item[@id=\"b\"]/name[2]", "/root/item[name='first']/@id", "/root/*", "/root/*[3]", "/root/@a", "/root/item/@id",
+            "root/item", "./root/./item", "/root/txt/text()", "/root/other/text()", "/root/text()", "/root/item[@id='b'][1]/name", "/root/item[1][@id='b']", "/nope", "item" };
+
+    private static final String[] COMPLEX_PATHS = { "//item", "/root/item[last()]", "/root/x:item", "/root/item/..", "count(/root/item)", "/root/item[@id!='a']", "/root/@*", "/root/item | /root/other", "/root/item/", "$var" };
+
+    @Test
+    public void testRecognizedPaths() {
+        for (String path : SIMPLE_PATHS) {
+            assertTrue(path, SimplePathExpression.isSimplePath(path));
+        }
+        for (String path : COMPLEX_PATHS) {
+            assertFalse(path, SimplePathExpression.isSimplePath(path));
+        }
+    }
+
+    @Test
+    public void testSameResultsAsXPathNamespaceAware() throws Exception {
+        compareWithXPath(true);
+    }
+
+    @Test
+    public void testSameResultsAsXPathWithoutNamespaces() throws Exception {
+        compareWithXPath(false);
+    }
+
+    private void compareWithXPath(final boolean namespaceAware) throws Exception {
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(namespaceAware);
+        final Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(XML.getBytes("UTF-8")));
+        final XPath xPath = XPathFactory.newInstance().newXPath();
+        for (String path : SIMPLE_PATHS) {
+            final XPathExpression expected = xPath.compile(path);
+            final XPathExpression actual = SimplePathExpression.compile(xPath, path);
+            for (Node context : new Node[] { document, document.getDocumentElement() }) {
+                final NodeList expectedNodes = (NodeList) expected.evaluate(context, XPathConstants.NODESET);
+                final NodeList actualNodes = (NodeList) actual.evaluate(context, XPathConstants.NODESET);
+                assertEquals(path, expectedNodes.getLength(), actualNodes.getLength());
+                for (int i = 0; i < expectedNodes.getLength(); ++i) {
+                    if (expectedNodes.item(i).getNodeType() == Node.TEXT_NODE) {
+                        assertEquals(path, expectedNodes.item(i).getNodeValue(), actualNodes.item(i).getNodeValue());
+                    } else {
+                        assertSame(path, expectedNodes.item(i), actualNodes.item(i));
+                    }
+                }
+                assertEquals(path, expected.evaluate(context, XPathConstants.STRING), actual.evaluate(context, XPathConstants.STRING));
+                assertEquals(path, expected.evaluate(context, XPathConstants.BOOLEAN), actual.evaluate(context, XPathConstants.BOOLEAN));
+            }
+        }
+    }
+}